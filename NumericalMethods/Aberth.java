@@ -0,0 +1,249 @@
+/*
+ *  Copyright (C) 2012 Rafael Rendón Pablo <smart.rendon@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* * This class finds all the roots of a polynomial at once with the
+ * Aberth-Ehrlich method, without deflation. */
+
+/*
+  Every iteration updates the n approximations z_1 ... z_n together:
+
+                     w_k                         f(z_k)
+    z_k = z_k - -------------------    w_k = ---------
+                1 - w_k * S_k                  f'(z_k)
+
+    S_k = sum of 1 / (z_k - z_j), j != k
+
+  w_k alone is Newton's step; S_k pushes z_k away from the other
+  approximations, so two of them don't go to the same root. All the
+  corrections are computed from the same z (Jacobi style), so they're
+  independent of each other. f and f' are evaluated with Horner's
+  recurrence (the b[i] of LinBairstow) in complex arithmetic. Converges
+  cubically near simple roots, and since f is never divided, the last
+  roots are as accurate as the first ones.
+
+  z_k stops moving when |f(z_k)| is at the level of the rounding error of
+  evaluating f there. Outside the unit circle f is evaluated through
+  its reversed coefficients at 1/z, so |z|^n doesn't overflow. The first
+  approximations are on a circle around the roots, with a small rotation
+  so that they aren't symmetric.
+
+  LinBairstow uses it for degrees from setAberthDegree() on:
+
+  $ java LinBairstow -aberth 0 < input.txt
+*/
+
+public class Aberth {
+  public static final int MAX_ITERATIONS = 500;
+  private static final double EPSILON = Math.ulp(1.0);
+
+  private double[] a = new double[21];
+  private double[] zr = new double[20], zi = new double[20]; // Roots
+  private double[] cr = new double[20], ci = new double[20]; // Corrections
+  private boolean[] done = new boolean[20];
+  private int maxIterations = MAX_ITERATIONS;
+  private int iterations;
+  private boolean converged;
+
+  public void setMaxIterations(int maxIterations)
+  {
+    this.maxIterations = maxIterations;
+  }
+
+  /** Iterations of the last call to roots(). */
+  public int getIterations() { return iterations; }
+
+  /** false if the last call to roots() reached maxIterations. */
+  public boolean hasConverged() { return converged; }
+
+  /**
+   * Same as LinBairstow.roots(), the roots of the polynomial in
+   * poly[offset..offset+n] go to re and im. Allocates nothing unless n is
+   * bigger than every degree before.
+  */
+  public int roots(double[] poly, int offset, int n, double[] re, double[] im)
+  {
+    int m = 0;
+    while (n > 0 && poly[offset + n] == 0)
+      n--;
+
+    // x = 0 is a root
+    int low = 0;
+    while (low < n && poly[offset + low] == 0) {
+      re[m] = im[m] = 0;
+      m++;
+      low++;
+    }
+    n -= low;
+
+    if (a.length < n + 1) {
+      a = new double[n + 1];
+      zr = new double[n];
+      zi = new double[n];
+      cr = new double[n];
+      ci = new double[n];
+      done = new boolean[n];
+    }
+    System.arraycopy(poly, offset + low, a, 0, n + 1);
+
+    iterations = 0;
+    converged = true;
+    if (n == 0)
+      return m;
+
+    double radius = Math.pow(Math.abs(a[0] / a[n]), 1.0 / n);
+    for (int k = 0; k < n; k++) {
+      double angle = 2 * Math.PI * k / n + 0.4;
+      zr[k] = radius * Math.cos(angle);
+      zi[k] = radius * Math.sin(angle);
+      done[k] = false;
+    }
+
+    int left = n;
+    while (left > 0) {
+      if (iterations == maxIterations) {
+        converged = false;
+        break;
+      }
+      iterations++;
+
+      for (int k = 0; k < n; k++) {
+        cr[k] = ci[k] = 0;
+        if (done[k])
+          continue;
+
+        double x = zr[k], y = zi[k];
+        double modulus = Math.hypot(x, y);
+
+        // Outside the unit circle z^n overflows for high degrees, so
+        // evaluate g(y) = y^n * f(1/y), the coefficients reversed, at
+        // y = 1/z instead
+        boolean outside = modulus > 1;
+        double hx = x, hy = y, hm = modulus;
+        if (outside) {
+          hm = 1 / modulus;
+          hx = x * hm * hm;
+          hy = -y * hm * hm;
+        }
+        int top = outside ? 0 : n, step = outside ? 1 : -1;
+
+        // Horner: p = f(z), d = f'(z), bound = sum of |a_i| |z|^i
+        double pr = a[top], pi = 0, dr = 0, di = 0;
+        double bound = Math.abs(a[top]);
+        for (int s = 1, i = top + step; s <= n; s++, i += step) {
+          double t = dr * hx - di * hy + pr;
+          di = dr * hy + di * hx + pi;
+          dr = t;
+
+          t = pr * hx - pi * hy + a[i];
+          pi = pr * hy + pi * hx;
+          pr = t;
+
+          bound = bound * hm + Math.abs(a[i]);
+        }
+
+        if (Math.hypot(pr, pi) <= 4 * n * EPSILON * bound) {
+          done[k] = true;
+          left--;
+          continue;
+        }
+
+        // w = f(z) / f'(z), or z / (n - y * g'(y) / g(y)) outside
+        double wr, wi;
+        if (!outside) {
+          double dd = dr * dr + di * di;
+          wr = (pr * dr + pi * di) / dd;
+          wi = (pi * dr - pr * di) / dd;
+        } else {
+          double pp = pr * pr + pi * pi;
+          double gr = (dr * pr + di * pi) / pp;
+          double gi = (di * pr - dr * pi) / pp;
+          double tr = n - (hx * gr - hy * gi);
+          double ti = -(hx * gi + hy * gr);
+          double tt = tr * tr + ti * ti;
+          wr = (x * tr + y * ti) / tt;
+          wi = (y * tr - x * ti) / tt;
+        }
+
+        // S = sum 1 / (z_k - z_j)
+        double sr = 0, si = 0;
+        for (int j = 0; j < n; j++) {
+          if (j == k)
+            continue;
+          double ur = x - zr[j], ui = y - zi[j];
+          double uu = ur * ur + ui * ui;
+          sr += ur / uu;
+          si -= ui / uu;
+        }
+
+        // correction = w / (1 - w * S)
+        double qr = 1 - (wr * sr - wi * si);
+        double qi = -(wr * si + wi * sr);
+        double qq = qr * qr + qi * qi;
+        cr[k] = (wr * qr + wi * qi) / qq;
+        ci[k] = (wi * qr - wr * qi) / qq;
+
+        if (!(Math.hypot(cr[k], ci[k]) > EPSILON * modulus)) { // or NaN
+          cr[k] = ci[k] = 0;
+          done[k] = true;
+          left--;
+        }
+      }
+
+      for (int k = 0; k < n; k++) {
+        zr[k] -= cr[k];
+        zi[k] -= ci[k];
+      }
+    }
+
+    // Real coefficients: an imaginary part at the rounding level is 0,
+    // and the complex roots come in pairs z, conj(z) like in LinBairstow
+    for (int k = 0; k < n; k++) {
+      if (Math.abs(zi[k]) <= 4 * n * EPSILON * Math.abs(zr[k]))
+        zi[k] = 0;
+      done[k] = false; // Already written
+    }
+
+    for (int k = 0; k < n; k++) {
+      if (done[k])
+        continue;
+      done[k] = true;
+
+      // The nearest approximation to conj(z_k) among the ones left
+      int pair = -1;
+      double best = Double.MAX_VALUE;
+      for (int j = k + 1; zi[k] != 0 && j < n; j++) {
+        double distance = Math.hypot(zr[j] - zr[k], zi[j] + zi[k]);
+        if (!done[j] && zi[j] * zi[k] < 0 && distance < best) {
+          best = distance;
+          pair = j;
+        }
+      }
+
+      int first = pair != -1 && zi[pair] > 0 ? pair : k;
+      re[m] = zr[first];
+      im[m++] = zi[first];
+      if (pair != -1) {
+        int second = first == k ? pair : k;
+        done[pair] = true;
+        re[m] = zr[second];
+        im[m++] = zi[second];
+      }
+    }
+
+    return m;
+  }
+}
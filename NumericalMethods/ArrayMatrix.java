@@ -0,0 +1,55 @@
+/*
+ *  Copyright (C) 2012 Rafael Rendón Pablo <smart.rendon@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* * Augmented matrix stored as double[n][n+1], one array per row. */
+
+public class ArrayMatrix implements AugmentedMatrix {
+  private static final RowKernel KERNEL = RowKernel.DEFAULT;
+  private double[][] M;
+
+  public ArrayMatrix(double[][] matrix) { M = matrix; }
+
+  public int rows() { return M.length; }
+
+  public double get(int i, int j) { return M[i][j]; }
+
+  public void set(int i, int j, double value) { M[i][j] = value; }
+
+  public void setRow(int i, double[] row)
+  {
+    System.arraycopy(row, 0, M[i], 0, row.length);
+  }
+
+  public double offDiagonalSum(int i, double[] X)
+  {
+    int n = M.length;
+    double[] row = M[i];
+
+    // b_i - (whole row * X - a_ii * x_i)
+    return row[n] - (KERNEL.dot(row, 0, X, n) - row[i] * X[i]);
+  }
+
+  /** Only the row references are moved. */
+  public void permuteRows(int[] R)
+  {
+    double[][] T = new double[M.length][];
+    for (int i = 0; i < R.length; i++)
+      T[i] = M[R[i]];
+
+    M = T;
+  }
+}
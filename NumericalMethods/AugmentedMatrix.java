@@ -0,0 +1,215 @@
+/*
+ *  Copyright (C) 2012 Rafael Rendón Pablo <smart.rendon@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* * Dense augmented matrix [A | b] of a system of n linear equations,
+ * n rows and n + 1 columns, column n is b. The solvers and the diagonal
+ * dominance check only access the matrix through this interface, so the
+ * storage can be an array of rows (ArrayMatrix), a single row-major array
+ * (FlatMatrix) or memory outside the Java heap (OffHeapMatrix). */
+
+public interface AugmentedMatrix {
+
+  /** Number of equations n. */
+  int rows();
+
+  /** a_ij, or b_i when j == n. */
+  double get(int i, int j);
+
+  void set(int i, int j, double value);
+
+  /** Copies row (n + 1 values) to row i. */
+  default void setRow(int i, double[] row)
+  {
+    for (int j = 0; j < row.length; j++)
+      set(i, j, row[j]);
+  }
+
+  /**
+   * b_i - sum of a_ij * X[j] for j != i, the numerator of the Jacobi and
+   * Gauss-Seidel updates.
+  */
+  double offDiagonalSum(int i, double[] X);
+
+  /**
+   * One Gauss-Seidel (SOR) sweep, in reverse order if backward is true.
+   * Returns the largest change of a component. tile is a hint for storages
+   * that can update the rows in blocks (see FlatMatrix), 0 is row by row.
+  */
+  default double gaussSeidelSweep(double[] X, double omega, boolean backward,
+                                  int tile)
+  {
+    int n = rows();
+    double delta = 0;
+    for (int k = 0; k < n; k++) {
+      int i = backward ? n - 1 - k : k;
+      double sum = offDiagonalSum(i, X); // b_i - sum of a_ij * x_j
+
+      // Update x_i to use in the next row calculation
+      double x = (1 - omega) * X[i] + omega / get(i, i) * sum;
+      delta = Math.max(delta, Math.abs(x - X[i]));
+      X[i] = x;
+    }
+
+    return delta;
+  }
+
+  /**
+   * Same as SparseMatrix.blockSweep(), k systems with this matrix and the
+   * right hand sides B interleaved; b of this matrix isn't used. Each a_ij
+   * is read once per sweep for the k systems.
+  */
+  default void blockSweep(double[] P, double[] X, double[] B, int k,
+                          double omega, double[] delta)
+  {
+    int n = rows();
+    double[] sum = new double[k];
+    for (int i = 0; i < n; i++) {
+      int row = i * k;
+      System.arraycopy(B, row, sum, 0, k);
+
+      for (int j = 0; j < n; j++) {
+        if (j == i)
+          continue;
+
+        double a = get(i, j);
+        int col = j * k;
+        for (int c = 0; c < k; c++)
+          sum[c] -= a * P[col + c];
+      }
+
+      double w = omega / get(i, i);
+      for (int c = 0; c < k; c++) {
+        double x = (1 - omega) * P[row + c] + w * sum[c];
+        delta[c] = Math.max(delta[c], Math.abs(x - P[row + c]));
+        X[row + c] = x;
+      }
+    }
+  }
+
+  /**
+   * Rearranges the rows, row r becomes the old row R[r]. Follows the cycles
+   * of R with a single row of extra memory.
+  */
+  default void permuteRows(int[] R)
+  {
+    int n = rows();
+    double[] row = new double[n + 1];
+    boolean[] done = new boolean[n];
+
+    for (int s = 0; s < n; s++) {
+      if (done[s] || R[s] == s)
+        continue;
+
+      for (int j = 0; j <= n; j++)
+        row[j] = get(s, j);
+
+      int r = s;
+      while (R[r] != s) {
+        for (int j = 0; j <= n; j++)
+          set(r, j, get(R[r], j));
+        done[r] = true;
+        r = R[r];
+      }
+
+      for (int j = 0; j <= n; j++)
+        set(r, j, row[j]);
+      done[r] = true;
+    }
+  }
+
+  /**
+   * An empty matrix for n equations in the given storage: "array", "flat",
+   * "offheap" or "float" (rounds the entries, see IterativeRefinement).
+  */
+  static AugmentedMatrix create(int n, String storage)
+  {
+    if (storage.equals("flat"))
+      return new FlatMatrix(n);
+    if (storage.equals("offheap"))
+      return new OffHeapMatrix(n);
+    if (storage.equals("float"))
+      return new FloatMatrix(n);
+
+    return new ArrayMatrix(new double[n][n+1]);
+  }
+
+  /**
+   * Finds a rearrangement of the rows that makes M diagonally dominant.
+   * A row can only be dominant in the column of its largest |a_ij| (it has
+   * to be greater than the rest of the row together), so rows and diagonal
+   * positions form a bipartite graph where every row has at most one edge,
+   * and a perfect matching exists iff no two rows claim the same column.
+   * Returns R, where row r of the new matrix is row R[r] of M, or null if
+   * there's no such arrangement. O(n^2), the size of M.
+  */
+  static int[] dominantRows(AugmentedMatrix M)
+  {
+    int n = M.rows();
+    int[] R = new int[n];
+    java.util.Arrays.fill(R, -1);
+
+    for (int i = 0; i < n; i++) {
+      double sum = 0, max = 0;
+      int best = 0;
+
+      for (int j = 0; j < n; j++) {
+        double a = Math.abs(M.get(i, j));
+        sum += a;
+        if (a > max) {
+          max = a;
+          best = j;
+        }
+      }
+
+      // diagonally dominant in column best? is the column still free?
+      if (2 * max <= sum || R[best] != -1)
+        return null;
+
+      R[best] = i;
+    }
+
+    return R;
+  }
+
+  /** |a_ii| > sum of |a_ij|, j != i. */
+  static boolean isRowDominant(AugmentedMatrix M, int i)
+  {
+    int n = M.rows();
+    double sum = 0;
+    for (int j = 0; j < n; j++)
+      if (j != i)
+        sum += Math.abs(M.get(i, j));
+
+    return Math.abs(M.get(i, i)) > sum;
+  }
+
+  /**
+   * Relative residual ||b - A * X|| / ||b||, maximum norm.
+  */
+  static double residual(AugmentedMatrix M, double[] X)
+  {
+    int n = M.rows();
+    double r = 0, normB = 0;
+    for (int i = 0; i < n; i++) {
+      double sum = M.offDiagonalSum(i, X) - M.get(i, i) * X[i];
+      r = Math.max(r, Math.abs(sum));
+      normB = Math.max(normB, Math.abs(M.get(i, n)));
+    }
+
+    return normB == 0 ? r : r / normB;
+  }
+}
@@ -0,0 +1,275 @@
+/*
+ *  Copyright (C) 2012 Rafael Rendón Pablo <smart.rendon@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* * This class chooses between Jacobi, Gauss-Seidel and SOR for a system
+ * of linear equations, from an estimate of the spectral radius of their
+ * iteration matrices, and then runs the one that needs fewer iterations. */
+
+/*
+  How to use:
+  The input is the same as for GaussSeidel and Jacobi:
+
+  $ java AutoSolver < equations.txt
+  $ java AutoSolver -mtx matrix.mtx -rhs b.mtx -tol 1e-10
+
+  An iterative method x_k+1 = T * x_k + c reduces the error by about
+  rho(T), the spectral radius of T, every iteration, so reaching a
+  tolerance tol takes about log(tol) / log(rho) iterations, and it
+  diverges if rho >= 1. rho is estimated with a few steps of the power
+  method, x_k+1 = T * x_k: each step is one sweep of the method on the
+  system with b = 0, whose iterates are exactly T^k * x_0. The steps stop
+  when ||T^k x|| / ||T^k-1 x|| changes less than SETTLE, usually after a
+  handful of them. SOR uses omega = 2 / (1 + sqrt(1 - rho(GS))), the
+  optimum for consistently ordered matrices, and its rho is measured the
+  same way with sweeps at that omega, so SOR is only chosen if it really
+  beats Gauss-Seidel for this matrix.
+
+  If every method has rho >= 1 the program stops before solving.
+*/
+
+import java.io.*;
+
+public class AutoSolver {
+  public static final int POWER_STEPS = 20; // At most, per method
+  public static final int MIN_STEPS = 4;
+  public static final double SETTLE = 0.01;
+  public static final String[] METHODS = {"Jacobi", "Gauss-Seidel", "SOR"};
+
+  private AugmentedMatrix M;
+  private SparseMatrix S;
+  private double[] radius = new double[3]; // rho of each method
+  private double omega = 1;
+
+  public AutoSolver(AugmentedMatrix matrix) { M = matrix; }
+
+  public AutoSolver(SparseMatrix matrix) { S = matrix; }
+
+  /**
+   * Rearranges the rows as makeDominant() does, the estimates are for the
+   * rearranged matrix. Returns false if it can't be made dominant.
+  */
+  public boolean makeDominant()
+  {
+    if (S != null) {
+      int[] R = S.dominantRows();
+      if (R != null)
+        S = S.permuteRows(R);
+      return R != null;
+    }
+
+    int[] R = AugmentedMatrix.dominantRows(M);
+    if (R != null)
+      M.permuteRows(R);
+    return R != null;
+  }
+
+  /**
+   * Estimates rho of the Jacobi (jacobi true) or Gauss-Seidel iteration
+   * matrix with at most the given number of power method steps.
+  */
+  public double estimateRadius(boolean jacobi, int steps)
+  {
+    return estimateRadius(jacobi, 1, steps);
+  }
+
+  /**
+   * Same for the relaxed methods, SOR if jacobi is false.
+  */
+  public double estimateRadius(boolean jacobi, double omega, int steps)
+  {
+    int n = S != null ? S.rows() : M.rows();
+    double[] X = new double[n];
+    double[] P = jacobi ? new double[n] : X;
+    double[] zero = new double[n];
+    double[] delta = new double[1];
+
+    for (int i = 0; i < n; i++) // Not orthogonal to any eigenvector, likely
+      P[i] = 1 + (i % 7) / 7.0;
+    normalize(P);
+
+    // ||T^k x|| / ||T^k-1 x|| tends to rho once the dominant eigenvalues
+    // are the only ones left
+    double[] growth = new double[steps];
+    double last = 0;
+    for (int k = 0; k < steps; k++) {
+      if (S != null)
+        S.blockSweep(P, X, zero, 1, omega, delta);
+      else
+        M.blockSweep(P, X, zero, 1, omega, delta);
+
+      double norm = normalize(X);
+      if (norm == 0)
+        return 0; // T is nilpotent on x_0, e.g. a triangular system
+
+      growth[k] = norm;
+      if (k + 1 >= MIN_STEPS && Math.abs(norm - last) <= SETTLE * norm)
+        return norm;
+      last = norm;
+
+      if (jacobi) {
+        double[] T = P;
+        P = X;
+        X = T;
+      }
+    }
+
+    // It didn't settle, e.g. complex dominant eigenvalues make the ratio
+    // oscillate: the mean growth over the second half of the steps
+    double logGrowth = 0;
+    for (int k = steps / 2; k < steps; k++)
+      logGrowth += Math.log(growth[k]);
+
+    return Math.exp(logGrowth / (steps - steps / 2));
+  }
+
+  // Scales x to norm 1 (maximum norm), returns the previous norm
+  private static double normalize(double[] x)
+  {
+    double max = 0;
+    for (int i = 0; i < x.length; i++)
+      max = Math.max(max, Math.abs(x[i]));
+
+    if (max > 0)
+      for (int i = 0; i < x.length; i++)
+        x[i] /= max;
+
+    return max;
+  }
+
+  /**
+   * Estimates rho for the three methods, index 0 Jacobi, 1 Gauss-Seidel,
+   * 2 SOR with the omega returned by getRelaxation().
+  */
+  public double[] estimate()
+  {
+    radius[0] = estimateRadius(true, POWER_STEPS);
+    radius[1] = estimateRadius(false, POWER_STEPS);
+
+    omega = GaussSeidel.optimalRelaxation(radius[1]);
+    radius[2] = omega == 1 ? radius[1] : estimateRadius(false, omega, POWER_STEPS);
+
+    return radius;
+  }
+
+  public double getRelaxation() { return omega; }
+
+  /**
+   * Iterations to reduce the error by tolerance when it decreases by rho
+   * each iteration, or -1 if it doesn't converge.
+  */
+  public static int predictIterations(double rho, double tolerance)
+  {
+    if (rho >= 1)
+      return -1;
+    if (rho <= 0)
+      return 1;
+
+    return (int)Math.ceil(Math.log(tolerance) / Math.log(rho));
+  }
+
+  /**
+   * Runs the method with the fewest predicted iterations (all of them
+   * cost one sweep), or returns null if none converges.
+  */
+  public SolveResult solve(double tolerance, int maxIterations,
+                           PrintWriter writer)
+  {
+    int best = -1;
+    int fewest = Integer.MAX_VALUE;
+
+    estimate();
+    for (int m = 0; m < 3; m++) {
+      int k = predictIterations(radius[m], tolerance);
+      writer.println(METHODS[m] + ": rho = " + radius[m] +
+                     (k < 0 ? ", diverges" : ", about " + k + " iterations"));
+      if (k >= 0 && k < fewest) {
+        fewest = k;
+        best = m;
+      }
+    }
+
+    if (best < 0) {
+      writer.println("None of the methods converges for this system.");
+      return null;
+    }
+
+    writer.println("Using " + METHODS[best] +
+                   (best == 2 ? " with omega = " + omega : ""));
+
+    if (best == 0) {
+      Jacobi jacobi = S != null ? new Jacobi(S) : new Jacobi(M);
+      jacobi.setTolerance(tolerance, Jacobi.STEP);
+      jacobi.setMaxIterations(maxIterations);
+      return jacobi.solve(null, 1);
+    }
+
+    GaussSeidel gaussSeidel = S != null ? new GaussSeidel(S) : new GaussSeidel(M);
+    gaussSeidel.setRelaxation(best == 2 ? omega : 1);
+    gaussSeidel.setTolerance(tolerance, GaussSeidel.STEP);
+    gaussSeidel.setMaxIterations(maxIterations);
+    return gaussSeidel.solve(null, 1);
+  }
+
+  public static void main(String[] args) throws IOException
+  {
+    PrintWriter writer = new PrintWriter(System.out, true);
+    String storage = "array";
+    String binary = null;
+    String mtx = null;
+    String rhs = null;
+    boolean sparse = false;
+    double tolerance = 1e-10;
+    int maxIterations = 10000;
+
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-sparse"))
+        sparse = true;
+      else if (args[i].equals("-flat") || args[i].equals("-offheap"))
+        storage = args[i].substring(1);
+      else if (args[i].equals("-bin") && i + 1 < args.length)
+        binary = args[++i];
+      else if (args[i].equals("-mtx") && i + 1 < args.length)
+        mtx = args[++i];
+      else if (args[i].equals("-rhs") && i + 1 < args.length)
+        rhs = args[++i];
+      else if (args[i].equals("-tol") && i + 1 < args.length)
+        tolerance = Double.parseDouble(args[++i]);
+      else if (args[i].equals("-max") && i + 1 < args.length)
+        maxIterations = Integer.parseInt(args[++i]);
+    }
+
+    AutoSolver solver;
+    if (mtx != null) {
+      solver = new AutoSolver(MatrixMarketReader.read(mtx, rhs));
+    } else if (sparse) {
+      solver = new AutoSolver(binary != null ? SystemReader.readBinarySparse(binary)
+                                             : new SystemReader(System.in).readSparse());
+    } else {
+      solver = new AutoSolver(binary != null ? SystemReader.readBinary(binary, storage)
+                                             : new SystemReader(System.in).readText(storage));
+    }
+
+    if (!solver.makeDominant())
+      writer.println("The system isn't diagonally dominant.");
+
+    SolveResult result = solver.solve(tolerance, maxIterations, writer);
+    if (result != null) {
+      IterationListener.PRINT.iteration(result.getIterations() - 1, result.getSolution(), 0);
+      writer.println(result);
+    }
+  }
+}
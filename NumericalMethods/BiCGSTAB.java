@@ -0,0 +1,160 @@
+/*
+ *  Copyright (C) 2012 Rafael Rendón Pablo <smart.rendon@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* * This class provides an implementation of the preconditioned BiCGSTAB
+ * (stabilized bi-conjugate gradient) method for general, nonsymmetric
+ * systems of linear equations. */
+
+/*
+  How to use:
+  The input is the same augmented matrix read by GaussSeidel and Jacobi,
+  for example:
+
+   3
+   5 -2  3 -1
+  -3  9  1  2
+   2 -1 -7  3
+
+  $ java BiCGSTAB < equations.txt
+  $ java BiCGSTAB -precond sgs < equations.txt
+  $ java BiCGSTAB -mtx matrix.mtx -rhs b.mtx
+
+  The matrix doesn't need to be diagonally dominant. The preconditioners
+  are the same as in ConjugateGradient: none, jacobi (default) or sgs.
+*/
+
+
+import java.io.*;
+
+public class BiCGSTAB {
+
+  public static final int MAX_ITERATIONS = 1000;
+  private SparseMatrix A;
+  private int preconditioner = SparseMatrix.JACOBI_PRECONDITIONER;
+
+  public BiCGSTAB(double[][] matrix) { A = SparseMatrix.fromDense(matrix); }
+
+  public BiCGSTAB(SparseMatrix matrix) { A = matrix; }
+
+  public void setPreconditioner(int type) { preconditioner = type; }
+
+  public void print() { A.print(); }
+
+  /**
+   * Applies BiCGSTAB with right preconditioning, A * M^-1 * y = b and
+   * x = M^-1 * y. Each iteration costs two products with A and two
+   * applications of the preconditioner.
+  */
+  public void solve()
+  {
+    int iterations = 0;
+    int n = A.rows();
+    double epsilon = 1e-12; // Relative residual ||r|| / ||b||
+    double[] b = A.rightHandSide();
+    double[] X = new double[n];   // Approximations
+    double[] R = b.clone();       // Residual b - A * X
+    double[] R0 = b.clone();      // Shadow residual
+    double[] P = new double[n];
+    double[] V = new double[n];
+    double[] S = new double[n];
+    double[] T = new double[n];
+    double[] PH = new double[n];  // M^-1 * P
+    double[] SH = new double[n];  // M^-1 * S
+    double rho = 1, alpha = 1, omega = 1;
+    double normB = Math.sqrt(dot(b, b));
+
+    if (normB == 0)
+      normB = 1;
+
+    while (Math.sqrt(dot(R, R)) / normB > epsilon
+           && iterations < MAX_ITERATIONS) {
+      double rhoNext = dot(R0, R);
+      if (rhoNext == 0 || omega == 0) {
+        System.out.println("The method broke down.");
+        break;
+      }
+
+      double beta = (rhoNext / rho) * (alpha / omega);
+      rho = rhoNext;
+
+      for (int i = 0; i < n; i++)
+        P[i] = R[i] + beta * (P[i] - omega * V[i]);
+
+      A.precondition(preconditioner, P, PH);
+      A.multiply(PH, V);
+      alpha = rho / dot(R0, V);
+
+      for (int i = 0; i < n; i++)
+        S[i] = R[i] - alpha * V[i];
+
+      A.precondition(preconditioner, S, SH);
+      A.multiply(SH, T);
+      double tt = dot(T, T);
+      omega = tt == 0 ? 0 : dot(T, S) / tt;
+
+      for (int i = 0; i < n; i++) {
+        X[i] += alpha * PH[i] + omega * SH[i];
+        R[i] = S[i] - omega * T[i];
+      }
+
+      System.out.print("X_" + iterations + " = {");
+      for (int i = 0; i < n; i++)
+        System.out.print(X[i] + " ");
+      System.out.println("}");
+
+      iterations++;
+    }
+  }
+
+  private static double dot(double[] x, double[] y)
+  {
+    double sum = 0;
+    for (int i = 0; i < x.length; i++)
+      sum += x[i] * y[i];
+
+    return sum;
+  }
+
+  public static void main(String[] args) throws IOException
+  {
+    int preconditioner = SparseMatrix.JACOBI_PRECONDITIONER;
+    String mtx = null;
+    String rhs = null;
+    SparseMatrix A;
+
+    for (int i = 0; i + 1 < args.length; i++) {
+      if (args[i].equals("-precond"))
+        preconditioner = ConjugateGradient.parsePreconditioner(args[++i]);
+      else if (args[i].equals("-mtx"))
+        mtx = args[++i];
+      else if (args[i].equals("-rhs"))
+        rhs = args[++i];
+    }
+
+    if (mtx != null)
+      A = MatrixMarketReader.read(mtx, rhs);
+    else
+      A = new SystemReader(System.in).readSparse();
+
+    BiCGSTAB bicgstab = new BiCGSTAB(A);
+    bicgstab.setPreconditioner(preconditioner);
+
+    bicgstab.print();
+    System.out.println();
+    bicgstab.solve();
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ *  Copyright (C) 2012 Rafael Rendón Pablo <smart.rendon@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* * This class solves one matrix against many right hand sides at once
+ * with the Jacobi or Gauss-Seidel iteration. The k approximations are
+ * iterated together as a block, so each sweep reads the matrix once
+ * instead of k times. Systems that converge leave the block. */
+
+public class BlockSolver {
+  private AugmentedMatrix M;
+  private SparseMatrix S;
+  private int[] order;
+  private boolean jacobi;
+  private double omega = 1;
+  private double tolerance = 1e-15;
+  private int maxIterations = GaussSeidel.MAX_ITERATIONS;
+
+  /**
+   * M or S is the (already rearranged) matrix, row r of it is row order[r]
+   * of the original system, so b_order[r] goes with it. Jacobi iteration
+   * if jacobi is true, Gauss-Seidel otherwise.
+  */
+  public BlockSolver(AugmentedMatrix M, SparseMatrix S, int[] order,
+                     boolean jacobi)
+  {
+    this.M = M;
+    this.S = S;
+    this.order = order;
+    this.jacobi = jacobi;
+  }
+
+  /** SOR factor, only for Gauss-Seidel. */
+  public void setRelaxation(double omega) { this.omega = omega; }
+
+  /** Stops a system when max |change of x_i| <= tolerance * max |x_i|. */
+  public void setTolerance(double tolerance) { this.tolerance = tolerance; }
+
+  public void setMaxIterations(int maxIterations) { this.maxIterations = maxIterations; }
+
+  /**
+   * B[c] is the c-th right hand side, in the original order of the rows.
+   * Returns the result of each system.
+  */
+  public SolveResult[] solve(double[][] B)
+  {
+    long start = System.nanoTime();
+    int n = order.length;
+    int k = B.length;
+    int[] system = new int[k]; // system[c] = which B is in column c
+    SolveResult[] results = new SolveResult[k];
+
+    double[] X = new double[n * k];
+    double[] P = jacobi ? new double[n * k] : X;
+    double[] R = new double[n * k]; // Right hand sides, interleaved
+    double[] delta = new double[k];
+    double[] max = new double[k];
+
+    for (int c = 0; c < k; c++) {
+      system[c] = c;
+      for (int r = 0; r < n; r++)
+        R[r * k + c] = B[c][order[r]];
+    }
+
+    int iterations = 0;
+    while (k > 0) {
+      java.util.Arrays.fill(delta, 0, k, 0);
+      if (S != null)
+        S.blockSweep(P, X, R, k, jacobi ? 1 : omega, delta);
+      else
+        M.blockSweep(P, X, R, k, jacobi ? 1 : omega, delta);
+      iterations++;
+
+      java.util.Arrays.fill(max, 0, k, 0);
+      for (int j = 0; j < n; j++)
+        for (int c = 0; c < k; c++)
+          max[c] = Math.max(max[c], Math.abs(X[j * k + c]));
+
+      // Take out the converged systems and pack the rest in fewer columns
+      int[] keep = new int[k];
+      int left = 0;
+      for (int c = 0; c < k; c++) {
+        if (delta[c] <= tolerance * max[c] || iterations >= maxIterations) {
+          double[] x = new double[n];
+          for (int j = 0; j < n; j++)
+            x[j] = X[j * k + c];
+          results[system[c]] = new SolveResult(x, iterations,
+                                               residual(x, B[system[c]]),
+                                               System.nanoTime() - start);
+        } else {
+          keep[left++] = c;
+        }
+      }
+
+      if (left < k) {
+        for (int c = 0; c < left; c++)
+          system[c] = system[keep[c]];
+        pack(X, n, k, keep, left);
+        pack(R, n, k, keep, left);
+      }
+
+      if (jacobi) { // X becomes the previous approximation
+        double[] T = P;
+        P = X;
+        X = T;
+      }
+
+      k = left;
+    }
+
+    return results;
+  }
+
+  /**
+   * Moves columns keep[0..left-1] of the n x k block A to a n x left block,
+   * in place: every value moves to a lower or equal position that has
+   * already been read.
+  */
+  private static void pack(double[] A, int n, int k, int[] keep, int left)
+  {
+    for (int j = 0; j < n; j++)
+      for (int c = 0; c < left; c++)
+        A[j * left + c] = A[j * k + keep[c]];
+  }
+
+  // Relative residual of the system with right hand side b (original order)
+  private double residual(double[] x, double[] b)
+  {
+    int n = x.length;
+    double[] rhs = new double[n];
+    for (int r = 0; r < n; r++)
+      rhs[r] = b[order[r]];
+
+    if (S != null)
+      return S.residual(x, rhs);
+
+    // offDiagonalSum uses the b of M: rhs_i - a_ii x_i - (b_i - offDiagonalSum)
+    double res = 0, normB = 0;
+    for (int i = 0; i < n; i++) {
+      double sum = rhs[i] - M.get(i, n) + M.offDiagonalSum(i, x) - M.get(i, i) * x[i];
+      res = Math.max(res, Math.abs(sum));
+      normB = Math.max(normB, Math.abs(rhs[i]));
+    }
+
+    return normB == 0 ? res : res / normB;
+  }
+}
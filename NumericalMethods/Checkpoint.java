@@ -0,0 +1,194 @@
+/*
+ *  Copyright (C) 2012 Rafael Rendón Pablo <smart.rendon@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* * Checkpoint of an iterative solve in a memory mapped file: the
+ * approximation X, the order of the rows chosen by makeDominant() and the
+ * iteration, so a killed run can continue where it was. */
+
+/*
+  The file has two slots and every save() overwrites the older one, so
+  there's always a complete checkpoint even if the process dies in the
+  middle of a save. A slot is written as:
+
+    sequence = 0           (the slot is invalid from now on)
+    iteration, omega, ..., order, X
+    CRC32 of all that
+    sequence = last + 1    (valid again, and the latest)
+
+  load() takes the valid slot with the highest sequence whose CRC
+  matches. A save is a copy of X into the mapping, about the cost of
+  reading X once; the pages are written to disk by the operating system
+  and survive the death of the process. close() forces them to disk.
+
+  $ java GaussSeidel -quiet -checkpoint run.ckpt -interval 100 < equations.txt
+  (killed)
+  $ java GaussSeidel -quiet -checkpoint run.ckpt -resume < equations.txt
+*/
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+public class Checkpoint {
+  public static final int MAGIC = 0x54504b43; // "CKPT" little endian
+  private static final int HEADER = 16;       // MAGIC, n, reserved
+  private static final int DATA = 40;         // Start of the order in a slot
+
+  private int n;
+  private long slotSize;
+  private long xOffset;
+  private MappedByteBuffer[] mapped = new MappedByteBuffer[2];
+  private ByteBuffer[] slots = new ByteBuffer[2];
+  private long[] sequence = new long[2];
+
+  // Loaded by load()
+  private int iteration;
+  private double omega, first;
+  private int[] order;
+  private double[] X;
+
+  /**
+   * Opens the checkpoint file of a system of n equations, creating it if
+   * it doesn't exist. An existing checkpoint of another system, or another
+   * kind of file, isn't overwritten.
+  */
+  public Checkpoint(String path, int n) throws IOException
+  {
+    this.n = n;
+    xOffset = (DATA + 4L * n + 7) & ~7L;
+    slotSize = xOffset + 8L * n;
+    if (slotSize > Integer.MAX_VALUE)
+      throw new IOException("Too many equations for a checkpoint: " + n);
+
+    try (FileChannel channel = FileChannel.open(Paths.get(path),
+           StandardOpenOption.CREATE, StandardOpenOption.READ,
+           StandardOpenOption.WRITE)) {
+      boolean empty = channel.size() == 0;
+      ByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER)
+                                 .order(ByteOrder.LITTLE_ENDIAN);
+
+      if (empty) {
+        header.putInt(0, MAGIC);
+        header.putInt(4, n);
+      } else if (header.getInt(0) != MAGIC) {
+        throw new IOException(path + " isn't a checkpoint file");
+      } else if (header.getInt(4) != n) {
+        throw new IOException(path + " is a checkpoint of a system of " +
+                              header.getInt(4) + " equations");
+      }
+
+      for (int s = 0; s < 2; s++) {
+        mapped[s] = channel.map(FileChannel.MapMode.READ_WRITE,
+                                HEADER + s * slotSize, slotSize);
+        slots[s] = mapped[s].duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        sequence[s] = slots[s].getLong(0);
+      }
+    }
+  }
+
+  /**
+   * Saves the state after the given iteration. omega and first are the
+   * relaxation factor and the first change of GaussSeidel's adaptive
+   * mode, order null is 0, 1, ..., n-1.
+  */
+  public void save(int iteration, double omega, double first, int[] order,
+                   double[] X)
+  {
+    int s = sequence[0] <= sequence[1] ? 0 : 1; // The older one
+    ByteBuffer slot = slots[s];
+    long next = Math.max(sequence[0], sequence[1]) + 1;
+
+    slot.putLong(0, 0);
+    slot.putInt(8, iteration);
+    slot.putDouble(16, omega);
+    slot.putDouble(24, first);
+
+    java.nio.IntBuffer ints = slot.slice(DATA, 4 * n)
+                                  .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    if (order != null) {
+      ints.put(order);
+    } else {
+      for (int i = 0; i < n; i++)
+        ints.put(i);
+    }
+    slot.slice((int)xOffset, 8 * n).order(ByteOrder.LITTLE_ENDIAN)
+        .asDoubleBuffer().put(X);
+
+    slot.putLong(32, crc(slot));
+    slot.putLong(0, next);
+    sequence[s] = next;
+  }
+
+  /**
+   * Reads the latest consistent checkpoint, returns false if there's
+   * none.
+  */
+  public boolean load()
+  {
+    int s = sequence[0] >= sequence[1] ? 0 : 1;
+    for (int k = 0; k < 2; k++, s = 1 - s) {
+      ByteBuffer slot = slots[s];
+      if (sequence[s] == 0 || slot.getLong(32) != crc(slot))
+        continue;
+
+      iteration = slot.getInt(8);
+      omega = slot.getDouble(16);
+      first = slot.getDouble(24);
+      order = new int[n];
+      X = new double[n];
+      slot.slice(DATA, 4 * n).order(ByteOrder.LITTLE_ENDIAN)
+          .asIntBuffer().get(order);
+      slot.slice((int)xOffset, 8 * n).order(ByteOrder.LITTLE_ENDIAN)
+          .asDoubleBuffer().get(X);
+      return true;
+    }
+
+    return false;
+  }
+
+  // CRC32 of the slot except the sequence and the CRC itself
+  private long crc(ByteBuffer slot)
+  {
+    CRC32 crc = new CRC32();
+    crc.update(slot.slice(8, 24));
+    crc.update(slot.slice(DATA, (int)(slotSize - DATA)));
+    return crc.getValue();
+  }
+
+  public int getIteration() { return iteration; }
+
+  public double getRelaxation() { return omega; }
+
+  public double getFirstChange() { return first; }
+
+  /** order[r] = row of the original system that was row r. */
+  public int[] getOrder() { return order; }
+
+  public double[] getSolution() { return X; }
+
+  /** Writes the mapped pages to disk. */
+  public void close()
+  {
+    for (MappedByteBuffer buffer : mapped)
+      buffer.force();
+  }
+}
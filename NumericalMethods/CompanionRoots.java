@@ -0,0 +1,330 @@
+/*
+ *  Copyright (C) 2012 Rafael Rendón Pablo <smart.rendon@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* * This class finds the roots of a polynomial as the eigenvalues of its
+ * companion matrix, with the shifted QR algorithm for Hessenberg
+ * matrices. */
+
+/*
+  How to use:
+  $ java LinBairstow -companion < input.txt
+
+  The roots of f(x) = a[0] + a[1] * x + ... + a[n] * x^n are the
+  eigenvalues of the companion matrix (c_i = a[i] / a[n])
+
+      | -c_n-1  -c_n-2  ...  -c_1  -c_0 |
+      |   1       0     ...    0     0  |
+      |   0       1     ...    0     0  |
+      |   .       .            .     .  |
+      |   0       0     ...    1     0  |
+
+  which is already upper Hessenberg (zero below the first subdiagonal).
+  First it is balanced: rows and columns are scaled by powers of 2 so
+  that their norms are similar, which makes the eigenvalues much less
+  sensitive to rounding when the coefficients have very different sizes.
+  Then the Francis double shift QR steps, each one O(n^2) because it
+  only touches the Hessenberg band, make the subdiagonal entries go to
+  zero one by one from the bottom, and every 1x1 or 2x2 block that is
+  split off gives one real root or a pair of complex roots. About two
+  steps per root, O(n^3) in total, and no starting values.
+*/
+
+public class CompanionRoots {
+  public static final int MAX_ITERATIONS = 60; // QR steps per root
+  private static final double RADIX = 2;
+
+  private double[] H = new double[400]; // n x n, row-major
+  private double[] wr = new double[20], wi = new double[20];
+  private int maxIterations = MAX_ITERATIONS;
+  private int iterations;
+  private boolean converged;
+
+  public void setMaxIterations(int maxIterations)
+  {
+    this.maxIterations = maxIterations;
+  }
+
+  /** QR steps of the last call to roots(). */
+  public int getIterations() { return iterations; }
+
+  /**
+   * false if some root of the last call to roots() took more than
+   * maxIterations steps, it is then the diagonal entry left.
+  */
+  public boolean hasConverged() { return converged; }
+
+  /**
+   * Same as LinBairstow.roots(), the roots of the polynomial in
+   * poly[offset..offset+n] go to re and im. Allocates nothing unless n is
+   * bigger than every degree before.
+  */
+  public int roots(double[] poly, int offset, int n, double[] re, double[] im)
+  {
+    int m = 0;
+    while (n > 0 && poly[offset + n] == 0)
+      n--;
+
+    // x = 0 is a root
+    int low = 0;
+    while (low < n && poly[offset + low] == 0) {
+      re[m] = im[m] = 0;
+      m++;
+      low++;
+    }
+    n -= low;
+    offset += low;
+
+    iterations = 0;
+    converged = true;
+    if (n == 0)
+      return m;
+
+    if (H.length < n * n) {
+      H = new double[n * n];
+      wr = new double[n];
+      wi = new double[n];
+    }
+
+    java.util.Arrays.fill(H, 0, n * n, 0);
+    for (int j = 0; j < n; j++)
+      H[j] = -poly[offset + n - 1 - j] / poly[offset + n];
+    for (int i = 1; i < n; i++)
+      H[i * n + i - 1] = 1;
+
+    balance(n);
+    hqr(n);
+
+    // Pairs as in LinBairstow, the positive imaginary part first
+    for (int k = 0; k < n; k++) {
+      if (wi[k] != 0 && k + 1 < n && wi[k + 1] == -wi[k]) {
+        int first = wi[k] > 0 ? k : k + 1;
+        re[m] = wr[first];
+        im[m++] = wi[first];
+        re[m] = wr[2 * k + 1 - first];
+        im[m++] = wi[2 * k + 1 - first];
+        k++;
+      } else {
+        re[m] = wr[k];
+        im[m++] = wi[k];
+      }
+    }
+
+    return m;
+  }
+
+  // Scales row i by 1/f and column i by f until the norms of the rows
+  // and columns are within a factor of 2, the eigenvalues don't change
+  private void balance(int n)
+  {
+    boolean done = false;
+    while (!done) {
+      done = true;
+      for (int i = 0; i < n; i++) {
+        double r = 0, c = 0;
+        for (int j = 0; j < n; j++) {
+          if (j != i) {
+            c += Math.abs(H[j * n + i]);
+            r += Math.abs(H[i * n + j]);
+          }
+        }
+        if (c == 0 || r == 0)
+          continue;
+
+        double g = r / RADIX, f = 1, s = c + r;
+        while (c < g) {
+          f *= RADIX;
+          c *= RADIX * RADIX;
+        }
+        g = r * RADIX;
+        while (c > g) {
+          f /= RADIX;
+          c /= RADIX * RADIX;
+        }
+
+        if ((c + r) / f < 0.95 * s) {
+          done = false;
+          for (int j = 0; j < n; j++)
+            H[i * n + j] /= f;
+          for (int j = 0; j < n; j++)
+            H[j * n + i] *= f;
+        }
+      }
+    }
+  }
+
+  private double h(int i, int j, int n) { return H[i * n + j]; }
+
+  /**
+   * Eigenvalues of the upper Hessenberg matrix H into wr + wi * i, with
+   * Francis double shift QR steps on the active block l..last. H is
+   * destroyed.
+  */
+  private void hqr(int n)
+  {
+    double norm = 0;
+    for (int i = 0; i < n; i++)
+      for (int j = Math.max(i - 1, 0); j < n; j++)
+        norm += Math.abs(h(i, j, n));
+
+    int last = n - 1, l;
+    double t = 0; // Shifts taken out of the diagonal
+    double p = 0, q = 0, r = 0, s, w, x, y, z;
+
+    while (last >= 0) {
+      int its = 0;
+      do {
+        // A negligible subdiagonal entry splits the matrix at l
+        for (l = last; l >= 1; l--) {
+          s = Math.abs(h(l - 1, l - 1, n)) + Math.abs(h(l, l, n));
+          if (s == 0)
+            s = norm;
+          if (Math.abs(h(l, l - 1, n)) + s == s) {
+            H[l * n + l - 1] = 0;
+            break;
+          }
+        }
+
+        x = h(last, last, n);
+        if (l == last) { // One real root
+          wr[last] = x + t;
+          wi[last--] = 0;
+          continue;
+        }
+
+        y = h(last - 1, last - 1, n);
+        w = h(last, last - 1, n) * h(last - 1, last, n);
+        if (l == last - 1) { // Two roots of the 2x2 block
+          p = 0.5 * (y - x);
+          q = p * p + w;
+          z = Math.sqrt(Math.abs(q));
+          x += t;
+          if (q >= 0) {
+            z = p + Math.copySign(z, p);
+            wr[last - 1] = wr[last] = x + z;
+            if (z != 0)
+              wr[last] = x - w / z;
+            wi[last - 1] = wi[last] = 0;
+          } else {
+            wr[last - 1] = wr[last] = x + p;
+            wi[last - 1] = z;
+            wi[last] = -z;
+          }
+          last -= 2;
+          continue;
+        }
+
+        if (its == maxIterations) {
+          // Give up on this one, take the diagonal entry as it is
+          converged = false;
+          wr[last] = x + t;
+          wi[last--] = 0;
+          continue;
+        }
+
+        if (its == 10 || its == 20) { // Exceptional shift
+          t += x;
+          for (int i = 0; i <= last; i++)
+            H[i * n + i] -= x;
+          s = Math.abs(h(last, last - 1, n)) + Math.abs(h(last - 1, last - 2, n));
+          y = x = 0.75 * s;
+          w = -0.4375 * s * s;
+        }
+        its++;
+        iterations++;
+
+        // Look for two consecutive small subdiagonal entries
+        int m;
+        for (m = last - 2; m >= l; m--) {
+          z = h(m, m, n);
+          r = x - z;
+          s = y - z;
+          p = (r * s - w) / h(m + 1, m, n) + h(m, m + 1, n);
+          q = h(m + 1, m + 1, n) - z - r - s;
+          r = h(m + 2, m + 1, n);
+          s = Math.abs(p) + Math.abs(q) + Math.abs(r);
+          p /= s;
+          q /= s;
+          r /= s;
+          if (m == l)
+            break;
+          double u = Math.abs(h(m, m - 1, n)) * (Math.abs(q) + Math.abs(r));
+          double v = Math.abs(p) * (Math.abs(h(m - 1, m - 1, n)) + Math.abs(z)
+                                    + Math.abs(h(m + 1, m + 1, n)));
+          if (u + v == v)
+            break;
+        }
+
+        for (int i = m + 2; i <= last; i++) {
+          H[i * n + i - 2] = 0;
+          if (i != m + 2)
+            H[i * n + i - 3] = 0;
+        }
+
+        // Double shift QR step on rows and columns m..last
+        for (int k = m; k <= last - 1; k++) {
+          if (k != m) {
+            p = h(k, k - 1, n);
+            q = h(k + 1, k - 1, n);
+            r = k != last - 1 ? h(k + 2, k - 1, n) : 0;
+            if ((x = Math.abs(p) + Math.abs(q) + Math.abs(r)) != 0) {
+              p /= x;
+              q /= x;
+              r /= x;
+            }
+          }
+
+          if ((s = Math.copySign(Math.sqrt(p * p + q * q + r * r), p)) == 0)
+            continue;
+
+          if (k == m) {
+            if (l != m)
+              H[k * n + k - 1] = -H[k * n + k - 1];
+          } else {
+            H[k * n + k - 1] = -s * x;
+          }
+          p += s;
+          x = p / s;
+          y = q / s;
+          z = r / s;
+          q /= p;
+          r /= p;
+
+          for (int j = k; j <= last; j++) {
+            p = h(k, j, n) + q * h(k + 1, j, n);
+            if (k != last - 1) {
+              p += r * h(k + 2, j, n);
+              H[(k + 2) * n + j] -= p * z;
+            }
+            H[(k + 1) * n + j] -= p * y;
+            H[k * n + j] -= p * x;
+          }
+
+          int bottom = Math.min(last, k + 3);
+          for (int i = l; i <= bottom; i++) {
+            p = x * h(i, k, n) + y * h(i, k + 1, n);
+            if (k != last - 1) {
+              p += z * h(i, k + 2, n);
+              H[i * n + k + 2] -= p * r;
+            }
+            H[i * n + k + 1] -= p * q;
+            H[i * n + k] -= p;
+          }
+        }
+      } while (l < last - 1);
+    }
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ *  Copyright (C) 2012 Rafael Rendón Pablo <smart.rendon@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* * This class provides an implementation of the preconditioned Conjugate
+ * Gradient method for symmetric positive definite systems of linear
+ * equations. */
+
+/*
+  How to use:
+  The input is the same augmented matrix read by GaussSeidel and Jacobi,
+  for example:
+
+   3
+   4 -1  0  2
+  -1  4 -1  6
+   0 -1  4  2
+
+  $ java ConjugateGradient < equations.txt
+
+  The matrix must be symmetric positive definite, the rows are not
+  rearranged. The preconditioner can be chosen with -precond:
+
+  $ java ConjugateGradient -precond sgs < equations.txt
+  $ java ConjugateGradient -mtx matrix.mtx -rhs b.mtx
+
+  none   : no preconditioner
+  jacobi : the diagonal of the matrix (default)
+  sgs    : symmetric Gauss-Seidel, a forward and a backward sweep
+*/
+
+
+import java.io.*;
+
+public class ConjugateGradient {
+
+  public static final int MAX_ITERATIONS = 1000;
+  private SparseMatrix A;
+  private int preconditioner = SparseMatrix.JACOBI_PRECONDITIONER;
+
+  public ConjugateGradient(double[][] matrix) { A = SparseMatrix.fromDense(matrix); }
+
+  public ConjugateGradient(SparseMatrix matrix) { A = matrix; }
+
+  public void setPreconditioner(int type) { preconditioner = type; }
+
+  public void print() { A.print(); }
+
+  /**
+   * Applies the Conjugate Gradient method, x_k minimizes the A-norm of the
+   * error over the k-th Krylov subspace, so in exact arithmetic it ends in
+   * at most n iterations. Each iteration costs one product A * p and one
+   * application of the preconditioner.
+  */
+  public void solve()
+  {
+    int iterations = 0;
+    int n = A.rows();
+    double epsilon = 1e-12; // Relative residual ||r|| / ||b||
+    double[] b = A.rightHandSide();
+    double[] X = new double[n]; // Approximations
+    double[] R = b.clone();     // Residual b - A * X
+    double[] Z = new double[n]; // Preconditioned residual
+    double[] P = new double[n]; // Search direction
+    double[] Q = new double[n]; // A * P
+    double normB = Math.sqrt(dot(b, b));
+
+    if (normB == 0)
+      normB = 1;
+
+    A.precondition(preconditioner, R, Z);
+    System.arraycopy(Z, 0, P, 0, n);
+    double rz = dot(R, Z);
+
+    while (Math.sqrt(dot(R, R)) / normB > epsilon
+           && iterations < MAX_ITERATIONS) {
+      A.multiply(P, Q);
+      double pq = dot(P, Q);
+      if (pq <= 0) {
+        System.out.println("The matrix isn't positive definite.");
+        break;
+      }
+
+      double alpha = rz / pq;
+      for (int i = 0; i < n; i++) {
+        X[i] += alpha * P[i];
+        R[i] -= alpha * Q[i];
+      }
+
+      A.precondition(preconditioner, R, Z);
+      double rzNext = dot(R, Z);
+      double beta = rzNext / rz;
+      rz = rzNext;
+
+      for (int i = 0; i < n; i++)
+        P[i] = Z[i] + beta * P[i];
+
+      System.out.print("X_" + iterations + " = {");
+      for (int i = 0; i < n; i++)
+        System.out.print(X[i] + " ");
+      System.out.println("}");
+
+      iterations++;
+    }
+  }
+
+  private static double dot(double[] x, double[] y)
+  {
+    double sum = 0;
+    for (int i = 0; i < x.length; i++)
+      sum += x[i] * y[i];
+
+    return sum;
+  }
+
+  /**
+   * Parses "none", "jacobi" or "sgs".
+  */
+  public static int parsePreconditioner(String name)
+  {
+    if (name.equals("none"))
+      return SparseMatrix.NO_PRECONDITIONER;
+    if (name.equals("sgs"))
+      return SparseMatrix.SGS_PRECONDITIONER;
+
+    return SparseMatrix.JACOBI_PRECONDITIONER;
+  }
+
+  public static void main(String[] args) throws IOException
+  {
+    int preconditioner = SparseMatrix.JACOBI_PRECONDITIONER;
+    String mtx = null;
+    String rhs = null;
+    SparseMatrix A;
+
+    for (int i = 0; i + 1 < args.length; i++) {
+      if (args[i].equals("-precond"))
+        preconditioner = parsePreconditioner(args[++i]);
+      else if (args[i].equals("-mtx"))
+        mtx = args[++i];
+      else if (args[i].equals("-rhs"))
+        rhs = args[++i];
+    }
+
+    if (mtx != null)
+      A = MatrixMarketReader.read(mtx, rhs);
+    else
+      A = new SystemReader(System.in).readSparse();
+
+    ConjugateGradient cg = new ConjugateGradient(A);
+    cg.setPreconditioner(preconditioner);
+
+    cg.print();
+    System.out.println();
+    cg.solve();
+  }
+}
@@ -0,0 +1,650 @@
+/*
+ *  Copyright (C) 2012 Rafael Rendón Pablo <smart.rendon@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* * This class solves a sparse system with the Jacobi method split among
+ * several processes (block Jacobi domain decomposition), each one with a
+ * block of rows, that exchange only the boundary values of X over
+ * sockets. The matrix is never in a single process. */
+
+/*
+  How to use:
+  Start a worker on every machine (0 picks a free port, it is printed):
+
+  $ java DistributedJacobi -worker 5000
+
+  and then the coordinator, with the same input as Jacobi:
+
+  $ java DistributedJacobi -workers host1:5000,host2:5000 -mtx A.mtx -rhs b.mtx
+  $ java DistributedJacobi -workers localhost:5000 -tol 1e-12 < equations.txt
+
+  -local k starts k workers on this machine, enough to try it:
+
+  $ java DistributedJacobi -local 4 -tol 1e-12 -max 5000 < equations.txt
+
+  Worker w gets the rows w * n / k to (w + 1) * n / k - 1. The coordinator
+  reads the input once and sends every entry to the worker of its row as
+  soon as it is read (a row of the text format, an entry of the Matrix
+  Market file, in any order), so it never holds the matrix: only vectors
+  of n values (X, b of a Matrix Market right hand side, and the column of
+  every row). Each worker builds its rows and answers with the column of
+  the largest |a_ij| of each one, that is enough for makeDominant() to
+  rearrange the rows as Jacobi does: row i then updates x_j, j its
+  column, instead of x_i.
+
+  A worker needs x_j of other blocks only for the columns j of its rows
+  (the halo), for a grid just the lines next to its block. Every
+  iteration:
+
+    1. each worker computes its x from the previous X (Jacobi) and sends
+       the coordinator its largest change, its max |x_i| and the values
+       other blocks need (its exports)
+    2. the coordinator decides if the whole X has converged (the STEP
+       criterion of Jacobi) and sends each worker "stop", or "continue",
+       and the values of its halo
+
+  so the iterates are those of Jacobi with one process (up to rounding,
+  the workers add the entries of a row in column order). At the end the
+  workers send their residual and their part of X. The halos go through
+  the coordinator; the workers keep their rows, their halo and a column
+  index of n ints while sorting their entries.
+*/
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+
+public class DistributedJacobi {
+  public static final int MAX_ITERATIONS = 100;
+
+  // Messages while the system is sent to the workers
+  private static final byte ENTRY = 0; // row, column, value
+  private static final byte RHS = 1;   // row, value
+  private static final byte END = 2;
+
+  private DataInputStream[] in;
+  private DataOutputStream[] out;
+  private int k;          // Number of workers
+  private int n;
+  private int[] first;    // Worker w has the rows first[w]..first[w+1]-1
+  private int[] best;     // Column where row i can be dominant, or -1
+  private int[] position; // Row i updates x_position[i], null for x_i
+  private double tolerance = 1e-15;
+  private int maxIterations = MAX_ITERATIONS;
+
+  /** Coordinator of the workers connected through the sockets. */
+  public DistributedJacobi(Socket[] sockets) throws IOException
+  {
+    k = sockets.length;
+    in = new DataInputStream[k];
+    out = new DataOutputStream[k];
+
+    for (int w = 0; w < k; w++) {
+      sockets[w].setTcpNoDelay(true);
+      in[w] = new DataInputStream(new BufferedInputStream(sockets[w].getInputStream()));
+      out[w] = new DataOutputStream(new BufferedOutputStream(sockets[w].getOutputStream()));
+    }
+  }
+
+  public int rows() { return n; }
+
+  /**
+   * Sends a system in the text format of Jacobi (n and then the rows of
+   * [A | b]) to the workers, one row at a time.
+  */
+  public void readText(SystemReader reader) throws IOException
+  {
+    begin(reader.nextInt());
+
+    for (int i = 0; i < n; i++) {
+      DataOutputStream o = out[owner(i)];
+      for (int j = 0; j < n; j++) {
+        double a = reader.nextDouble();
+        if (a != 0)
+          sendEntry(o, i, j, a);
+      }
+      sendRightHandSide(o, i, reader.nextDouble());
+    }
+
+    end();
+  }
+
+  /**
+   * Sends a Matrix Market matrix to the workers entry by entry, and b
+   * from rhsPath (see MatrixMarketReader.readVector()) or all ones.
+  */
+  public void readMatrixMarket(String matrixPath, String rhsPath)
+    throws IOException
+  {
+    MatrixMarketReader.stream(matrixPath, new MatrixMarketReader.EntryHandler() {
+      public void size(int n, long entries) throws IOException
+      {
+        begin(n);
+      }
+
+      public void entry(int i, int j, double a) throws IOException
+      {
+        sendEntry(out[owner(i)], i, j, a);
+      }
+    });
+
+    double[] b = rhsPath != null ? MatrixMarketReader.readVector(rhsPath, n)
+                                 : null;
+    for (int i = 0; i < n; i++)
+      sendRightHandSide(out[owner(i)], i, b != null ? b[i] : 1);
+
+    end();
+  }
+
+  // Splits the n rows among the workers and tells them their block
+  private void begin(int n) throws IOException
+  {
+    this.n = n;
+    first = new int[k + 1];
+    for (int w = 0; w <= k; w++)
+      first[w] = (int)((long)w * n / k);
+
+    for (int w = 0; w < k; w++) {
+      out[w].writeInt(n);
+      out[w].writeInt(first[w]);
+      out[w].writeInt(first[w+1]);
+    }
+  }
+
+  // Worker with row i
+  private int owner(int i)
+  {
+    int w = (int)((long)i * k / n);
+    while (first[w+1] <= i)
+      w++;
+    while (first[w] > i)
+      w--;
+    return w;
+  }
+
+  private static void sendEntry(DataOutputStream o, int i, int j, double a)
+    throws IOException
+  {
+    o.writeByte(ENTRY);
+    o.writeInt(i);
+    o.writeInt(j);
+    o.writeDouble(a);
+  }
+
+  private static void sendRightHandSide(DataOutputStream o, int i, double b)
+    throws IOException
+  {
+    o.writeByte(RHS);
+    o.writeInt(i);
+    o.writeDouble(b);
+  }
+
+  // The workers answer the end of their rows with best[] of them
+  private void end() throws IOException
+  {
+    for (int w = 0; w < k; w++) {
+      out[w].writeByte(END);
+      out[w].flush();
+    }
+
+    best = new int[n];
+    for (int w = 0; w < k; w++)
+      for (int i = first[w]; i < first[w+1]; i++)
+        best[i] = in[w].readInt();
+  }
+
+  /**
+   * Rearranges the rows to make the matrix diagonally dominant, as
+   * SparseMatrix.dominantRows(), returns false if it isn't possible.
+  */
+  public boolean makeDominant()
+  {
+    boolean[] taken = new boolean[n];
+    for (int i = 0; i < n; i++) {
+      if (best[i] < 0 || taken[best[i]])
+        return false;
+      taken[best[i]] = true;
+    }
+
+    position = best;
+    return true;
+  }
+
+  private int position(int i) { return position != null ? position[i] : i; }
+
+  /** max |change of x_i| <= tolerance * max |x_i| */
+  public void setTolerance(double tolerance) { this.tolerance = tolerance; }
+
+  public void setMaxIterations(int maxIterations)
+  {
+    this.maxIterations = maxIterations;
+  }
+
+  /**
+   * Coordinates the solve among the workers, after readText() or
+   * readMatrixMarket(). Once per connection.
+  */
+  public SolveResult solve() throws IOException
+  {
+    long start = System.nanoTime();
+
+    // The x each row updates, then each worker answers with its halo
+    for (int w = 0; w < k; w++) {
+      for (int i = first[w]; i < first[w+1]; i++)
+        out[w].writeInt(position(i));
+      out[w].flush();
+    }
+
+    int[][] imports = new int[k][];
+    boolean[] needed = new boolean[n];
+    for (int w = 0; w < k; w++) {
+      imports[w] = readInts(in[w]);
+      for (int j : imports[w])
+        needed[j] = true;
+    }
+
+    // Exports: the x of a block that are in some halo
+    int[][] exports = new int[k][];
+    for (int w = 0; w < k; w++) {
+      int count = 0;
+      for (int i = first[w]; i < first[w+1]; i++)
+        if (needed[position(i)])
+          count++;
+
+      exports[w] = new int[count];
+      count = 0;
+      for (int i = first[w]; i < first[w+1]; i++)
+        if (needed[position(i)])
+          exports[w][count++] = position(i);
+      Arrays.sort(exports[w]);
+
+      writeInts(out[w], exports[w]);
+      out[w].flush();
+    }
+
+    double[] X = new double[n]; // The halo values, and the solution at the end
+    int iterations = 0;
+    boolean stop = false;
+
+    while (!stop) {
+      double delta = 0, max = 0;
+      for (int w = 0; w < k; w++) {
+        delta = Math.max(delta, in[w].readDouble());
+        max = Math.max(max, in[w].readDouble());
+        for (int j : exports[w])
+          X[j] = in[w].readDouble();
+      }
+
+      iterations++;
+      stop = delta <= tolerance * max || iterations >= maxIterations;
+
+      // The halos also go with "stop", for the residual
+      for (int w = 0; w < k; w++) {
+        out[w].writeBoolean(stop);
+        for (int j : imports[w])
+          out[w].writeDouble(X[j]);
+        out[w].flush();
+      }
+    }
+
+    double residual = 0, normB = 0;
+    for (int w = 0; w < k; w++) {
+      residual = Math.max(residual, in[w].readDouble());
+      normB = Math.max(normB, in[w].readDouble());
+      for (int i = first[w]; i < first[w+1]; i++)
+        X[position(i)] = in[w].readDouble();
+    }
+
+    return new SolveResult(X, iterations, normB == 0 ? residual : residual / normB,
+                           System.nanoTime() - start);
+  }
+
+  /**
+   * Worker: waits for a coordinator on the port (0 for any free one,
+   * printed as "port p"), iterates its block of rows until it is told to
+   * stop and sends its part of X.
+  */
+  public static void serve(int port) throws IOException
+  {
+    try (ServerSocket server = new ServerSocket(port)) {
+      System.out.println("port " + server.getLocalPort());
+      System.out.flush();
+
+      try (Socket socket = server.accept()) {
+        socket.setTcpNoDelay(true);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        iterate(in, out);
+      }
+    }
+  }
+
+  private static void iterate(DataInputStream in, DataOutputStream out)
+    throws IOException
+  {
+    int n = in.readInt();
+    int first = in.readInt();
+    int m = in.readInt() - first;
+
+    // The entries of the rows, in the order they come
+    int[] row = new int[16];
+    int[] column = new int[16];
+    double[] value = new double[16];
+    double[] b = new double[m];
+    int count = 0;
+
+    for (byte type = in.readByte(); type != END; type = in.readByte()) {
+      int r = in.readInt() - first;
+      if (type == RHS) {
+        b[r] = in.readDouble();
+        continue;
+      }
+
+      if (count == row.length) {
+        row = Arrays.copyOf(row, 2 * count);
+        column = Arrays.copyOf(column, 2 * count);
+        value = Arrays.copyOf(value, 2 * count);
+      }
+      row[count] = r;
+      column[count] = in.readInt();
+      value[count++] = in.readDouble();
+    }
+
+    // Sorted by row and then column (two stable counting sorts), the
+    // repeated entries added up
+    int[] order = countingSort(row, m, countingSort(column, n, null, count),
+                               count);
+    int[] rowStart = new int[m + 1];
+    for (int e = 0; e < count; e++)
+      rowStart[row[e] + 1]++;
+    for (int r = 0; r < m; r++)
+      rowStart[r+1] += rowStart[r];
+
+    int[] col = new int[count];
+    double[] val = new double[count];
+    int size = 0;
+    for (int r = 0; r < m; r++) {
+      int begin = size;
+      for (int e = rowStart[r]; e < rowStart[r+1]; e++) {
+        int p = order[e];
+        if (size > begin && col[size - 1] == column[p]) {
+          val[size - 1] += value[p];
+        } else {
+          col[size] = column[p];
+          val[size++] = value[p];
+        }
+      }
+      rowStart[r] = begin;
+    }
+    rowStart[m] = size;
+    row = column = order = null;
+    value = null;
+
+    // The column of the largest |a_ij| of every row, the diagonal on ties,
+    // or -1 if the row isn't dominant even there
+    for (int r = 0; r < m; r++) {
+      double max = 0, sum = 0;
+      int best = first + r;
+      for (int p = rowStart[r]; p < rowStart[r+1]; p++)
+        if (col[p] == first + r)
+          max = Math.abs(val[p]);
+      for (int p = rowStart[r]; p < rowStart[r+1]; p++) {
+        sum += Math.abs(val[p]);
+        if (Math.abs(val[p]) > max) {
+          max = Math.abs(val[p]);
+          best = col[p];
+        }
+      }
+      out.writeInt(2 * max <= sum ? -1 : best);
+    }
+    out.flush();
+
+    // Row r updates x_position[r]. The x of this block, sorted, with the
+    // row of each one
+    int[] position = new int[m];
+    long[] pairs = new long[m];
+    for (int r = 0; r < m; r++) {
+      position[r] = in.readInt();
+      pairs[r] = (long)position[r] << 32 | r;
+    }
+    Arrays.sort(pairs);
+    int[] owned = new int[m];
+    int[] ownedRow = new int[m];
+    for (int r = 0; r < m; r++) {
+      owned[r] = (int)(pairs[r] >>> 32);
+      ownedRow[r] = (int)pairs[r];
+    }
+
+    // Halo: the columns that aren't x of this block
+    int[] halo = new int[size];
+    int h = 0;
+    for (int p = 0; p < size; p++)
+      if (Arrays.binarySearch(owned, col[p]) < 0)
+        halo[h++] = col[p];
+    Arrays.sort(halo, 0, h);
+    int distinct = 0;
+    for (int p = 0; p < h; p++)
+      if (distinct == 0 || halo[distinct - 1] != halo[p])
+        halo[distinct++] = halo[p];
+    halo = Arrays.copyOf(halo, distinct);
+    writeInts(out, halo);
+    out.flush();
+
+    int[] exports = readInts(in);
+    for (int e = 0; e < exports.length; e++)
+      exports[e] = ownedRow[Arrays.binarySearch(owned, exports[e])];
+
+    // Local columns: 0..m-1 the x of the rows, m..m+h-1 the halo. The
+    // diagonal entries go out of the rows, the rest move to the front.
+    double[] invDiagonal = new double[m];
+    int p = 0;
+    for (int r = 0; r < m; r++) {
+      int begin = rowStart[r], end = rowStart[r+1];
+      rowStart[r] = p;
+      invDiagonal[r] = 1 / 0.0; // A zero diagonal, as in SparseMatrix
+      for (int q = begin; q < end; q++) {
+        if (col[q] == position[r]) {
+          invDiagonal[r] = 1 / val[q];
+          continue;
+        }
+        int local = Arrays.binarySearch(owned, col[q]);
+        col[p] = local >= 0 ? ownedRow[local]
+                            : m + Arrays.binarySearch(halo, col[q]);
+        val[p++] = val[q];
+      }
+    }
+    rowStart[m] = p;
+
+    double[] P = new double[m + halo.length]; // Previous X, own x and halo
+    double[] X = new double[m];
+    boolean stop = false;
+
+    while (!stop) {
+      double delta = 0, max = 0;
+      for (int r = 0; r < m; r++) {
+        double sum = b[r];
+        for (int q = rowStart[r]; q < rowStart[r+1]; q++)
+          sum -= val[q] * P[col[q]];
+
+        X[r] = invDiagonal[r] * sum;
+        delta = Math.max(delta, Math.abs(X[r] - P[r]));
+        max = Math.max(max, Math.abs(X[r]));
+      }
+      System.arraycopy(X, 0, P, 0, m);
+
+      out.writeDouble(delta);
+      out.writeDouble(max);
+      for (int r : exports)
+        out.writeDouble(P[r]);
+      out.flush();
+
+      stop = in.readBoolean();
+      for (int j = 0; j < halo.length; j++)
+        P[m + j] = in.readDouble();
+    }
+
+    // b - A * x of the rows with the final X, and max |b_i|
+    double residual = 0, normB = 0;
+    for (int r = 0; r < m; r++) {
+      double sum = b[r] - P[r] / invDiagonal[r];
+      for (int q = rowStart[r]; q < rowStart[r+1]; q++)
+        sum -= val[q] * P[col[q]];
+
+      residual = Math.max(residual, Math.abs(sum));
+      normB = Math.max(normB, Math.abs(b[r]));
+    }
+
+    out.writeDouble(residual);
+    out.writeDouble(normB);
+    for (int r = 0; r < m; r++)
+      out.writeDouble(P[r]);
+    out.flush();
+  }
+
+  private static void writeInts(DataOutputStream out, int[] a) throws IOException
+  {
+    out.writeInt(a.length);
+    for (int x : a)
+      out.writeInt(x);
+  }
+
+  private static int[] readInts(DataInputStream in) throws IOException
+  {
+    int[] a = new int[in.readInt()];
+    for (int i = 0; i < a.length; i++)
+      a[i] = in.readInt();
+    return a;
+  }
+
+  /**
+   * Starts k worker processes on this machine with the same class path,
+   * and connects to them.
+  */
+  private static Socket[] launchLocal(int k, Process[] processes)
+    throws IOException
+  {
+    String java = System.getProperty("java.home") + File.separator + "bin"
+                  + File.separator + "java";
+    Socket[] sockets = new Socket[k];
+
+    for (int w = 0; w < k; w++) {
+      processes[w] = new ProcessBuilder(java, "-cp",
+                         System.getProperty("java.class.path"),
+                         "DistributedJacobi", "-worker", "0")
+                         .redirectError(ProcessBuilder.Redirect.INHERIT)
+                         .start();
+
+      BufferedReader reader = new BufferedReader(
+          new InputStreamReader(processes[w].getInputStream()));
+      String line = reader.readLine();
+      if (line == null || !line.startsWith("port "))
+        throw new IOException("The worker " + w + " didn't start");
+
+      sockets[w] = new Socket("localhost", Integer.parseInt(line.substring(5)));
+    }
+
+    return sockets;
+  }
+
+  public static void main(String[] args) throws IOException
+  {
+    PrintWriter writer = new PrintWriter(System.out, true);
+    String mtx = null;
+    String rhs = null;
+    String workers = null;
+    int local = 0;
+    double tolerance = 1e-15;
+    int maxIterations = MAX_ITERATIONS;
+
+    for (int i = 0; i + 1 < args.length; i++) {
+      if (args[i].equals("-worker")) {
+        serve(Integer.parseInt(args[++i]));
+        return;
+      } else if (args[i].equals("-workers"))
+        workers = args[++i];
+      else if (args[i].equals("-local"))
+        local = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-mtx"))
+        mtx = args[++i];
+      else if (args[i].equals("-rhs"))
+        rhs = args[++i];
+      else if (args[i].equals("-tol"))
+        tolerance = Double.parseDouble(args[++i]);
+      else if (args[i].equals("-max"))
+        maxIterations = Integer.parseInt(args[++i]);
+    }
+
+    // The workers first, the input goes to them as it is read
+    Socket[] sockets;
+    Process[] processes = new Process[workers != null ? 0 : Math.max(1, local)];
+    if (workers != null) {
+      String[] addresses = workers.split(",");
+      sockets = new Socket[addresses.length];
+      for (int w = 0; w < addresses.length; w++) {
+        int colon = addresses[w].lastIndexOf(':');
+        sockets[w] = new Socket(addresses[w].substring(0, colon),
+                                Integer.parseInt(addresses[w].substring(colon + 1)));
+      }
+    } else {
+      sockets = launchLocal(processes.length, processes);
+    }
+
+    try {
+      DistributedJacobi jacobi = new DistributedJacobi(sockets);
+      if (mtx != null)
+        jacobi.readMatrixMarket(mtx, rhs);
+      else
+        jacobi.readText(new SystemReader(System.in));
+
+      jacobi.setTolerance(tolerance);
+      jacobi.setMaxIterations(maxIterations);
+      if (!jacobi.makeDominant()) {
+        writer.println("The system isn't diagonally dominant: " +
+                       "The method cannot guarantee convergence.");
+      }
+
+      SolveResult result = jacobi.solve();
+      IterationListener.PRINT.iteration(result.getIterations() - 1, result.getSolution(), 0);
+      writer.println(result + ", workers = " + sockets.length);
+    } finally {
+      for (Socket socket : sockets)
+        socket.close();
+      for (Process process : processes)
+        if (process != null)
+          process.destroy();
+    }
+  }
+
+  // The indices 0..count-1, in the given order (0, 1, ... if null),
+  // stably sorted by key[i] in 0..range-1
+  private static int[] countingSort(int[] key, int range, int[] order,
+                                    int count)
+  {
+    int[] start = new int[range + 1];
+    for (int e = 0; e < count; e++)
+      start[key[e] + 1]++;
+    for (int i = 0; i < range; i++)
+      start[i+1] += start[i];
+
+    int[] sorted = new int[count];
+    for (int e = 0; e < count; e++) {
+      int p = order != null ? order[e] : e;
+      sorted[start[key[p]]++] = p;
+    }
+    return sorted;
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ *  Copyright (C) 2012 Rafael Rendón Pablo <smart.rendon@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* * Augmented matrix stored row-major in a single double[], a_ij is
+ * data[i * (n + 1) + j]. There's one object instead of n, and a sweep
+ * reads memory sequentially. At most 2^31 - 1 entries, about 46340
+ * equations, use OffHeapMatrix for larger systems. */
+
+public class FlatMatrix implements AugmentedMatrix {
+  private static final RowKernel KERNEL = RowKernel.DEFAULT;
+  private static final int CHUNK = 2048; // Columns of a tile, 16 KB of X
+  private int n;
+  private int stride; // n + 1
+  private double[] data;
+
+  public FlatMatrix(int n)
+  {
+    if ((long)n * (n + 1) > Integer.MAX_VALUE - 8)
+      throw new IllegalArgumentException("Too many equations for a single array: " + n);
+
+    this.n = n;
+    this.stride = n + 1;
+    this.data = new double[n * stride];
+  }
+
+  public FlatMatrix(double[][] M)
+  {
+    this(M.length);
+    for (int i = 0; i < n; i++)
+      System.arraycopy(M[i], 0, data, i * stride, stride);
+  }
+
+  public int rows() { return n; }
+
+  public double get(int i, int j) { return data[i * stride + j]; }
+
+  public void set(int i, int j, double value) { data[i * stride + j] = value; }
+
+  public void setRow(int i, double[] row)
+  {
+    System.arraycopy(row, 0, data, i * stride, stride);
+  }
+
+  public double offDiagonalSum(int i, double[] X)
+  {
+    int row = i * stride;
+
+    // b_i - (whole row * X - a_ii * x_i)
+    return data[row + n] - (KERNEL.dot(data, row, X, n) - data[row + i] * X[i]);
+  }
+
+  /**
+   * With tile > 0 the rows are updated in blocks of tile rows. When a
+   * block starts, every x_j outside it already has the value this sweep
+   * uses (new to the left of the block and old to the right in a forward
+   * sweep), so those partial sums are computed first: four rows at a time,
+   * over pieces of CHUNK columns that stay in the L1 cache. Only the
+   * tile x tile diagonal block is left for the row by row update. The
+   * result is the same sweep, up to the order of the additions.
+  */
+  public double gaussSeidelSweep(double[] X, double omega, boolean backward,
+                                 int tile)
+  {
+    if (tile <= 0 || tile >= n)
+      return AugmentedMatrix.super.gaussSeidelSweep(X, omega, backward, tile);
+
+    double[] partial = new double[tile];
+    double[] sums = new double[4];
+    int blocks = (n + tile - 1) / tile;
+    double delta = 0;
+
+    for (int k = 0; k < blocks; k++) {
+      int first = (backward ? blocks - 1 - k : k) * tile;
+      int last = Math.min(n, first + tile);
+      int size = last - first;
+
+      java.util.Arrays.fill(partial, 0);
+      for (int c = 0; c < n; c += CHUNK) {
+        int end = Math.min(n, c + CHUNK);
+        if (c < first)
+          partialSums(X, first, size, c, Math.min(end, first), partial, sums);
+        if (end > last)
+          partialSums(X, first, size, Math.max(c, last), end, partial, sums);
+      }
+
+      for (int t = 0; t < size; t++) {
+        int i = backward ? last - 1 - t : first + t;
+        int row = i * stride;
+        double sum = data[row + n] - partial[i - first];
+        for (int j = first; j < last; j++)
+          if (j != i)
+            sum -= data[row + j] * X[j];
+
+        double x = (1 - omega) * X[i] + omega / data[row + i] * sum;
+        delta = Math.max(delta, Math.abs(x - X[i]));
+        X[i] = x;
+      }
+    }
+
+    return delta;
+  }
+
+  // partial[r] += row (first + r) * X over the columns from..to-1
+  private void partialSums(double[] X, int first, int size, int from, int to,
+                           double[] partial, double[] sums)
+  {
+    int r = 0;
+    for (; r + 3 < size; r += 4) {
+      int row = (first + r) * stride;
+      java.util.Arrays.fill(sums, 0);
+      KERNEL.dot4(data, row, row + stride, row + 2 * stride, row + 3 * stride,
+                  X, from, to, sums);
+      for (int q = 0; q < 4; q++)
+        partial[r + q] += sums[q];
+    }
+
+    for (; r < size; r++) {
+      int row = (first + r) * stride;
+      for (int j = from; j < to; j++)
+        partial[r] += data[row + j] * X[j];
+    }
+  }
+
+  /** The underlying array, row i starts at i * (n + 1). */
+  public double[] data() { return data; }
+}
@@ -0,0 +1,110 @@
+/*
+ *  Copyright (C) 2012 Rafael Rendón Pablo <smart.rendon@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* * Augmented matrix stored row-major in a single float[], like FlatMatrix
+ * but with half the memory, so a sweep reads half the bytes. The sums
+ * are accumulated in double. Entries that aren't floats are rounded, use
+ * it through IterativeRefinement to get double precision answers. */
+
+public class FloatMatrix implements AugmentedMatrix {
+  private int n;
+  private int stride; // n + 1
+  private float[] data;
+  private boolean exact = true;
+
+  public FloatMatrix(int n)
+  {
+    if ((long)n * (n + 1) > Integer.MAX_VALUE - 8)
+      throw new IllegalArgumentException("Too many equations for a single array: " + n);
+
+    this.n = n;
+    this.stride = n + 1;
+    this.data = new float[n * stride];
+  }
+
+  /** Float copy of M, row by row. */
+  public FloatMatrix(AugmentedMatrix M)
+  {
+    this(M.rows());
+    for (int i = 0; i < n; i++)
+      for (int j = 0; j <= n; j++)
+        set(i, j, M.get(i, j));
+  }
+
+  public int rows() { return n; }
+
+  public double get(int i, int j) { return data[i * stride + j]; }
+
+  public void set(int i, int j, double value)
+  {
+    float a = (float)value;
+    if (a != value)
+      exact = false;
+    data[i * stride + j] = a;
+  }
+
+  /**
+   * True if no entry has been rounded, then this matrix is the system
+   * itself and not an approximation of it.
+  */
+  public boolean isExact() { return exact; }
+
+  public double offDiagonalSum(int i, double[] X)
+  {
+    int row = i * stride;
+    return data[row + n] - (dot(row, X, 0, n) - data[row + i] * X[i]);
+  }
+
+  // Row starting at data[row] times X, columns from..to-1
+  private double dot(int row, double[] X, int from, int to)
+  {
+    double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+    int j = from;
+    for (; j + 3 < to; j += 4) {
+      s0 += data[row + j] * X[j];
+      s1 += data[row + j + 1] * X[j + 1];
+      s2 += data[row + j + 2] * X[j + 2];
+      s3 += data[row + j + 3] * X[j + 3];
+    }
+    for (; j < to; j++)
+      s0 += data[row + j] * X[j];
+
+    return (s0 + s1) + (s2 + s3);
+  }
+
+  /**
+   * Same as AugmentedMatrix.blockSweep() reading the rows directly. The
+   * inner iteration of IterativeRefinement, with k = 1 and B the residual.
+  */
+  public void blockSweep(double[] P, double[] X, double[] B, int k,
+                         double omega, double[] delta)
+  {
+    if (k != 1) {
+      AugmentedMatrix.super.blockSweep(P, X, B, k, omega, delta);
+      return;
+    }
+
+    for (int i = 0; i < n; i++) {
+      int row = i * stride;
+      double a = data[row + i];
+      double sum = B[i] - (dot(row, P, 0, n) - a * P[i]);
+      double x = (1 - omega) * P[i] + omega / a * sum;
+      delta[0] = Math.max(delta[0], Math.abs(x - P[i]));
+      X[i] = x;
+    }
+  }
+}
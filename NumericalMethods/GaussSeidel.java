@@ -36,80 +36,247 @@
 
   If the matrix isn't diagonally dominant the program tries
   to convert it(if possible) by rearranging the rows.
+
+  For systems with few nonzeros per row use the sparse storage, the rows
+  are read straight into it and the zeros are dropped, so the dense matrix
+  is never in memory (the input still has n + 1 numbers per row, for big
+  systems the Matrix Market format below is much shorter):
+
+  $ java GaussSeidel -sparse < equations.txt
+
+  Dense systems can also be stored in a single array, or outside the Java
+  heap for systems bigger than the heap:
+
+  $ java GaussSeidel -flat < equations.txt
+  $ java GaussSeidel -offheap < equations.txt
+
+  The coefficients can be decimal numbers (0.25, -1.5e-3). Big systems
+  load much faster from the binary format written by SystemReader:
+
+  $ java GaussSeidel -bin equations.bin
+
+  Sparse matrices in Matrix Market coordinate format are read directly
+  into the sparse storage, b from another file (see MatrixMarketReader):
+
+  $ java GaussSeidel -mtx matrix.mtx -rhs b.mtx -quiet
+
+  To solve the same matrix for many right hand sides, put the number of
+  them, k, and then the k vectors of n values in a file:
+
+  $ java GaussSeidel -batch vectors.txt < equations.txt
+
+  With several threads the rows are colored so that rows of one color
+  don't depend on each other, and each color is updated in parallel
+  (multicolor Gauss-Seidel, red-black for 5-point grids):
+
+  $ java GaussSeidel -sparse -threads 8 < equations.txt
+
+  If the colors have less than MIN_COLOR_ROWS rows on average, as for any
+  dense matrix, the rows are updated sequentially.
+
+  Successive over-relaxation (SOR) with a fixed factor, or chosen
+  automatically after a few sweeps, and its symmetric variant (SSOR):
+
+  $ java GaussSeidel -omega 1.5 < equations.txt
+  $ java GaussSeidel -omega auto -ssor < equations.txt
+
+  Big dense systems in the flat storage can be swept in blocks of rows
+  whose columns are read in cache-sized pieces (see FlatMatrix and
+  SweepBenchmark):
+
+  $ java GaussSeidel -flat -tile 64 -quiet < equations.txt
+
+  Printing every approximation is slow for big systems. With -quiet only
+  the solution, the number of iterations, the residual and the time are
+  printed (and X_k every k iterations with -every k). The tolerance is
+  relative to max |x_i|, or to ||b|| with -residual:
+
+  $ java GaussSeidel -quiet -tol 1e-10 -residual -max 5000 < equations.txt
+
+  Dense systems can be swept over a float copy of the matrix, half the
+  bytes per sweep, with residuals in double so the answer still meets the
+  tolerance (see IterativeRefinement). The system is read as floats, and
+  a double copy is only kept if some entry isn't exactly a float:
+
+  $ java GaussSeidel -float -quiet -tol 1e-12 < equations.txt
+
+  Long runs can save their state every k iterations to a file, and
+  continue from it if they are killed (see Checkpoint):
+
+  $ java GaussSeidel -quiet -checkpoint run.ckpt -interval 100 < equations.txt
+  $ java GaussSeidel -quiet -checkpoint run.ckpt -resume < equations.txt
 */
 
 
 import java.io.*;
-import java.util.Arrays;
-import java.util.StringTokenizer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 public class GaussSeidel {
 
   public static final int MAX_ITERATIONS = 100;
-  private double[][] M;
+  public static final int ADAPTIVE_SWEEPS = 5;
+  public static final int MIN_COLOR_ROWS = 8; // Average rows per color
+  public static final int STEP = 0;     // Stopping criteria
+  public static final int RESIDUAL = 1;
+  private AugmentedMatrix M;
+  private SparseMatrix S; // Used instead of M when the system is sparse
+  private int[] order;    // Rows chosen by makeDominant()
+  private double[] initial;
+  private Checkpoint checkpoint;
+  private int checkpointInterval;
+  private boolean resumed;    // Continue the state loaded by resume()
+  private int resumeIteration;
+  private double resumeOmega, resumeFirst;
+  private int threads = 1;
+  private double omega = 1;
+  private double lastOmega = 1;
+  private boolean adaptive;
+  private boolean symmetric;
+  private int tile;
+  private double tolerance = 1e-15;
+  private int criterion = STEP;
+  private int maxIterations = MAX_ITERATIONS;
+
+  // Multicolor ordering, the pool only while solve() runs with threads > 1.
+  // The coloring is kept for the next solves until the rows move.
+  private ForkJoinPool pool;
+  private SparseMatrix A;
+  private int[][] colors;
   
-  public GaussSeidel(double [][] matrix) { M = matrix; }
+  public GaussSeidel(double [][] matrix) { M = new ArrayMatrix(matrix); }
+
+  public GaussSeidel(AugmentedMatrix matrix) { M = matrix; }
+
+  public GaussSeidel(SparseMatrix matrix) { S = matrix; }
+
+  /** Number of equations. */
+  public int rows() { return S != null ? S.rows() : M.rows(); }
 
   public void print()
   {
-    int n = M.length;
+    if (S != null) {
+      S.print();
+      return;
+    }
+
+    int n = M.rows();
     for (int i = 0; i < n; i++) {
       for (int j = 0; j < n + 1; j++)
-        System.out.print(M[i][j] + " ");
+        System.out.print(M.get(i, j) + " ");
       System.out.println();
     }
   }
 
-  public boolean transformToDominant(int r, boolean[] V, int[] R)
+  /**
+   * Returns true if is possible to transform M(data member) to a diagonally
+   * dominant matrix, false otherwise.
+  */
+  public boolean makeDominant()
   {
-    int n = M.length;
-    if (r == M.length) {
-      double[][] T = new double[n][n+1];
-      for (int i = 0; i < R.length; i++) {
-        for (int j = 0; j < n + 1; j++)
-          T[i][j] = M[R[i]][j];
-      }
+    if (S != null) {
+      int[] R = S.dominantRows();
+      if (R == null)
+        return false;
 
-      M = T;
-      
+      S = S.permuteRows(R);
+      reorder(R);
       return true;
     }
 
-    for (int i = 0; i < n; i++) {
-      if (V[i]) continue;
+    int[] R = AugmentedMatrix.dominantRows(M);
+    if (R == null)
+      return false;
 
-      double sum = 0;
-      
-      for (int j = 0; j < n; j++)
-        sum += Math.abs(M[i][j]);
+    M.permuteRows(R);
+    reorder(R);
 
-      if (2 * Math.abs(M[i][r]) > sum) { // diagonally dominant?
-        V[i] = true;
-        R[r] = i;
+    return true;
+  }
 
-        if (transformToDominant(r + 1, V, R))
-          return true;
+  // order[r] = row of the original system that is now row r
+  private void reorder(int[] R)
+  {
+    int n = R.length;
+    int[] next = new int[n];
+    for (int r = 0; r < n; r++)
+      next[r] = order == null ? R[r] : order[R[r]];
+
+    order = next;
+    A = null; // The colors are for the old order
+    colors = null;
+  }
 
-        V[i] = false;
-      }
+  /**
+   * Saves the state every interval iterations of the next solves, null
+   * stops saving.
+  */
+  public void setCheckpoint(Checkpoint checkpoint, int interval)
+  {
+    this.checkpoint = checkpoint;
+    this.checkpointInterval = Math.max(1, interval);
+  }
+
+  /**
+   * Continues from the latest checkpoint in the file: the rows go back to
+   * the order saved, and the next solve starts from the saved X and
+   * iteration. Returns false if there's no checkpoint.
+  */
+  public boolean resume(Checkpoint checkpoint)
+  {
+    if (!checkpoint.load())
+      return false;
+
+    // Row r must be the original row saved[r], now it is order[r]
+    int[] saved = checkpoint.getOrder();
+    int n = rows();
+    int[] position = new int[n];
+    for (int r = 0; r < n; r++)
+      position[order == null ? r : order[r]] = r;
+
+    int[] R = new int[n];
+    boolean same = true;
+    for (int r = 0; r < n; r++) {
+      R[r] = position[saved[r]];
+      same &= R[r] == r;
+    }
+
+    if (!same) {
+      if (S != null)
+        S = S.permuteRows(R);
+      else
+        M.permuteRows(R);
+      reorder(R);
     }
 
-    return false;
+    initial = checkpoint.getSolution();
+    resumeIteration = checkpoint.getIteration();
+    resumeOmega = checkpoint.getRelaxation();
+    resumeFirst = checkpoint.getFirstChange();
+    resumed = true;
+    return true;
   }
-  
-  
+
   /**
-   * Returns true if is possible to transform M(data member) to a diagonally
-   * dominant matrix, false otherwise.
+   * Solves the system for every right hand side B[c] (given in the order
+   * of the rows before makeDominant()), iterating all of them as a block
+   * that reads the matrix once per sweep. Uses the STEP criterion.
   */
-  public boolean makeDominant()
+  public SolveResult[] solve(double[][] B)
   {
-    boolean[] visited = new boolean[M.length];
-    int[] rows = new int[M.length];
+    int n = rows();
+    if (order == null) {
+      order = new int[n];
+      for (int r = 0; r < n; r++)
+        order[r] = r;
+    }
 
-    Arrays.fill(visited, false);
+    BlockSolver block = new BlockSolver(M, S, order, false);
+    block.setTolerance(tolerance);
+    block.setMaxIterations(maxIterations);
+    block.setRelaxation(adaptive ? lastOmega : omega);
 
-    return transformToDominant(0, visited, rows);
+    return block.solve(B);
   }
 
 
@@ -126,73 +293,427 @@ public class GaussSeidel {
   */
   public void solve()
   {
+    solve(IterationListener.PRINT, 1);
+
+    if (adaptive)
+      System.out.println("omega = " + lastOmega);
+  }
+
+  /**
+   * Same as solve() but without printing, the listener (may be null) is
+   * called every interval iterations instead. Stops when the criterion
+   * (STEP or RESIDUAL) is below the tolerance, or after maxIterations.
+   * The interval must be positive when there is a listener.
+  */
+  public SolveResult solve(IterationListener listener, int interval)
+  {
+    if (listener != null && interval <= 0)
+      throw new IllegalArgumentException("The interval must be positive: " + interval);
+
+    long start = System.nanoTime();
     int iterations = 0;
-    int n = M.length;
-    double epsilon = 1e-15;
-    double[] X = new double[n]; // Approximations
-    double[] P = new double[n]; // Prev
-    Arrays.fill(X, 0);
+    int n = S != null ? S.rows() : M.rows();
+    double[] X = initial != null ? initial.clone() : new double[n]; // Approximations
+    double w = adaptive ? 1 : omega;
+    double first = 0; // Change in the first sweep, to estimate the rate
+
+    if (resumed) {
+      iterations = resumeIteration;
+      first = resumeFirst;
+      if (adaptive && iterations >= ADAPTIVE_SWEEPS)
+        w = resumeOmega;
+      resumed = false;
+    }
+
+    if (threads > 1 && colors == null) {
+      // Rows with the same color don't read each other's x, so each color
+      // can be updated in parallel
+      A = S != null ? S : SparseMatrix.fromDense(M);
+      colors = A.colorClasses();
+
+      // A dense matrix is a complete graph, every row gets its own color
+      // and there is nothing to split, the sequential sweep is faster
+      if (colors.length > n / MIN_COLOR_ROWS)
+        A = null;
+    }
+    if (threads > 1 && A != null)
+      pool = new ForkJoinPool(threads);
 
     while (true) {
-      for (int i = 0; i < n; i++) {
-        double sum = M[i][n]; // b_n
+      double delta = sweep(X, w, false); // Largest change of a component
+      if (symmetric)
+        delta = Math.max(delta, sweep(X, w, true));
 
-        for (int j = 0; j < n; j++)
-          if (j != i)
-            sum -= M[i][j] * X[j];
+      if (listener != null && iterations % interval == 0)
+        listener.iteration(iterations, X, delta);
 
-        // Update x_i to use in the next row calculation
-        X[i] = 1/M[i][i] * sum;   
+      iterations++;
+      if (converged(X, delta) || iterations >= maxIterations) break;
+
+      if (adaptive && iterations == 1) {
+        first = delta;
+      } else if (adaptive && iterations == ADAPTIVE_SWEEPS) {
+        // The changes of plain Gauss-Seidel shrink by rho each sweep
+        double rho = Math.pow(delta / first, 1.0 / (iterations - 1));
+        w = optimalRelaxation(rho);
       }
 
-      System.out.print("X_" + iterations + " = {");
-      for (int i = 0; i < n; i++)
-        System.out.print(X[i] + " ");
-      System.out.println("}");
+      if (checkpoint != null && iterations % checkpointInterval == 0)
+        checkpoint.save(iterations, w, first, order, X);
+    }
 
-      iterations++;
-      if (iterations == 1) continue;
+    if (pool != null) {
+      pool.shutdown();
+      pool = null;
+    }
+
+    lastOmega = w;
+    return new SolveResult(X, iterations, residual(X),
+                           System.nanoTime() - start);
+  }
+
+  /**
+   * STEP: max |change of x_i| <= tolerance * max |x_i|.
+   * RESIDUAL: ||b - M * X|| <= tolerance * ||b||, costs one more product
+   * with the matrix per iteration.
+  */
+  public void setTolerance(double tolerance, int criterion)
+  {
+    this.tolerance = tolerance;
+    this.criterion = criterion;
+  }
+
+  public void setMaxIterations(int maxIterations)
+  {
+    this.maxIterations = maxIterations;
+  }
 
-      boolean stop = true;
-      for (int i = 0; i < n && stop; i++)
-        if (Math.abs(X[i] - P[i]) > epsilon)
-          stop = false;
+  /**
+   * Starts the next solves from X0 instead of zero, e.g. the solution of a
+   * similar system. null goes back to zero.
+  */
+  public void setInitialGuess(double[] X0)
+  {
+    initial = X0;
+  }
 
-      if (stop || iterations == MAX_ITERATIONS) break;
-      P = (double[])X.clone();
+  /**
+   * The relaxation factor used at the end of the last solve, the one
+   * chosen by the adaptive mode.
+  */
+  public double getRelaxation() { return lastOmega; }
+
+  private boolean converged(double[] X, double delta)
+  {
+    if (criterion == RESIDUAL)
+      return residual(X) <= tolerance;
+
+    double max = 0;
+    for (int i = 0; i < X.length; i++)
+      max = Math.max(max, Math.abs(X[i]));
+
+    return delta <= tolerance * max;
+  }
+
+  /**
+   * Relative residual ||b - M * X|| / ||b||, maximum norm.
+  */
+  public double residual(double[] X)
+  {
+    if (S != null)
+      return S.residual(X);
+
+    return AugmentedMatrix.residual(M, X);
+  }
+
+  /**
+   * For consistently ordered matrices rho(Gauss-Seidel) = rho(Jacobi)^2 and
+   * the best SOR factor is 2 / (1 + sqrt(1 - rho(Jacobi)^2)). Returns 1 if
+   * the sweeps don't seem to converge.
+  */
+  public static double optimalRelaxation(double rho)
+  {
+    if (!(rho > 0 && rho < 1))
+      return 1;
+
+    return 2 / (1 + Math.sqrt(1 - rho));
+  }
+
+  /**
+   * Number of worker threads used by solve(). With more than one thread
+   * the rows are updated in multicolor order instead of 1, 2, ..., n,
+   * unless the coloring needs more than n / MIN_COLOR_ROWS colors.
+  */
+  public void setThreads(int threads)
+  {
+    this.threads = Math.max(1, threads);
+  }
+
+  /**
+   * Relaxation factor omega, x_i = (1 - omega) * x_i + omega * x_i(GS).
+   * 1 is plain Gauss-Seidel, between 1 and 2 is over-relaxation (SOR).
+  */
+  public void setRelaxation(double omega)
+  {
+    this.omega = omega;
+    this.adaptive = false;
+  }
+
+  /**
+   * Runs the first ADAPTIVE_SWEEPS sweeps with omega = 1, estimates the
+   * spectral radius from how fast the changes decrease and then fixes
+   * omega near its optimum.
+  */
+  public void setAdaptiveRelaxation(boolean adaptive)
+  {
+    this.adaptive = adaptive;
+  }
+
+  /**
+   * Symmetric SOR: every iteration is a forward sweep followed by a
+   * backward sweep (n, n-1, ..., 1).
+  */
+  public void setSymmetric(boolean symmetric)
+  {
+    this.symmetric = symmetric;
+  }
+
+  /**
+   * Rows per block of the dense sweeps, 0 updates row by row. Only the
+   * flat storage uses it.
+  */
+  public void setTile(int tile)
+  {
+    this.tile = Math.max(0, tile);
+  }
+
+  /**
+   * One sweep over all the rows, in reverse order if backward is true.
+   * Returns the largest change of a component.
+  */
+  private double sweep(double[] X, double w, boolean backward)
+  {
+    if (pool != null) {
+      double delta = 0;
+      for (int c = 0; c < colors.length; c++) {
+        int[] rows = colors[backward ? colors.length - 1 - c : c];
+        int grain = Math.max(16, rows.length / (4 * threads));
+        delta = Math.max(delta, pool.invoke(
+                  new ColorBlock(A, X, w, rows, 0, rows.length, grain)));
+      }
+      return delta;
+    }
+
+    if (S != null)
+      return S.gaussSeidelSweep(X, w, backward);
+
+    return M.gaussSeidelSweep(X, w, backward, tile);
+  }
+
+  /**
+   * Updates rows[from..to-1], all of the same color, splitting the range
+   * among the pool.
+  */
+  private static class ColorBlock extends RecursiveTask<Double> {
+    private static final long serialVersionUID = 1L;
+    private SparseMatrix A;
+    private double[] X;
+    private double w;
+    private int[] rows;
+    private int from, to, grain;
+
+    ColorBlock(SparseMatrix A, double[] X, double w, int[] rows, int from,
+               int to, int grain)
+    {
+      this.A = A;
+      this.X = X;
+      this.w = w;
+      this.rows = rows;
+      this.from = from;
+      this.to = to;
+      this.grain = grain;
+    }
+
+    protected Double compute()
+    {
+      if (to - from <= grain)
+        return A.gaussSeidelSweep(X, w, rows, from, to);
+
+      int middle = (from + to) >>> 1;
+      ColorBlock left = new ColorBlock(A, X, w, rows, from, middle, grain);
+      left.fork();
+      double right = new ColorBlock(A, X, w, rows, middle, to, grain).compute();
+
+      return Math.max(left.join(), right);
     }
   }
 
   public static void main(String[] args) throws IOException
   {
-    int n;
-    double[][] M;
-
-    BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+    AugmentedMatrix M = null;
     PrintWriter writer = new PrintWriter(System.out, true);
 
-    n = Integer.parseInt(reader.readLine());
-    M = new double[n][n+1];
-
-    for (int i = 0; i < n; i++) {
-      StringTokenizer strtk = new StringTokenizer(reader.readLine());
+    boolean sparse = false;
+    String storage = "array";
+    String binary = null;
+    String mtx = null;
+    String rhs = null;
+    String batch = null;
+    boolean symmetric = false;
+    int tile = 0;
+    boolean quiet = false;
+    boolean mixed = false;
+    String checkpointPath = null;
+    int checkpointInterval = 100;
+    boolean resume = false;
+    int threads = 1;
+    int every = 0;
+    int criterion = STEP;
+    double tolerance = 1e-15;
+    int maxIterations = MAX_ITERATIONS;
+    String omega = "1";
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-sparse"))
+        sparse = true;
+      else if (args[i].equals("-flat") || args[i].equals("-offheap"))
+        storage = args[i].substring(1);
+      else if (args[i].equals("-bin") && i + 1 < args.length)
+        binary = args[++i];
+      else if (args[i].equals("-mtx") && i + 1 < args.length)
+        mtx = args[++i];
+      else if (args[i].equals("-rhs") && i + 1 < args.length)
+        rhs = args[++i];
+      else if (args[i].equals("-batch") && i + 1 < args.length)
+        batch = args[++i];
+      else if (args[i].equals("-threads") && i + 1 < args.length)
+        threads = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-omega") && i + 1 < args.length)
+        omega = args[++i];
+      else if (args[i].equals("-ssor"))
+        symmetric = true;
+      else if (args[i].equals("-tile") && i + 1 < args.length)
+        tile = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-quiet"))
+        quiet = true;
+      else if (args[i].equals("-float"))
+        mixed = true;
+      else if (args[i].equals("-checkpoint") && i + 1 < args.length)
+        checkpointPath = args[++i];
+      else if (args[i].equals("-interval") && i + 1 < args.length)
+        checkpointInterval = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-resume"))
+        resume = true;
+      else if (args[i].equals("-every") && i + 1 < args.length)
+        every = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-tol") && i + 1 < args.length)
+        tolerance = Double.parseDouble(args[++i]);
+      else if (args[i].equals("-residual"))
+        criterion = RESIDUAL;
+      else if (args[i].equals("-max") && i + 1 < args.length)
+        maxIterations = Integer.parseInt(args[++i]);
+    }
 
-      while (strtk.hasMoreTokens())
-      for (int j = 0; j < n + 1 && strtk.hasMoreTokens(); j++)
-        M[i][j] = Integer.parseInt(strtk.nextToken());
+    if (mixed) {
+      String ignored = (threads > 1 ? " -threads" : "") +
+                       (symmetric ? " -ssor" : "") +
+                       (omega.equals("auto") ? " -omega auto" : "") +
+                       (tile > 0 ? " -tile" : "") +
+                       (checkpointPath != null ? " -checkpoint" : "") +
+                       (sparse || mtx != null ? " -sparse -mtx" : "") +
+                       (batch != null ? " -batch" : "");
+      if (!ignored.isEmpty()) {
+        System.err.println("-float can't be used with" + ignored);
+        System.exit(1);
+      }
     }
 
-    
-    GaussSeidel gausSeidel = new GaussSeidel(M);
+    GaussSeidel gausSeidel;
+
+    if (mtx != null) {
+      gausSeidel = new GaussSeidel(MatrixMarketReader.read(mtx, rhs));
+    } else {
+      if (mixed)
+        storage = "mixed";
+      if (sparse && binary != null)
+        gausSeidel = new GaussSeidel(SystemReader.readBinarySparse(binary));
+      else if (sparse)
+        gausSeidel = new GaussSeidel(new SystemReader(System.in).readSparse());
+      else {
+        if (binary != null)
+          M = SystemReader.readBinary(binary, storage);
+        else
+          M = new SystemReader(System.in).readText(storage);
+        gausSeidel = new GaussSeidel(M);
+      }
+    }
+    gausSeidel.setThreads(threads);
+    gausSeidel.setSymmetric(symmetric);
+    gausSeidel.setTile(tile);
+    gausSeidel.setTolerance(tolerance, criterion);
+    gausSeidel.setMaxIterations(maxIterations);
+    if (omega.equals("auto"))
+      gausSeidel.setAdaptiveRelaxation(true);
+    else
+      gausSeidel.setRelaxation(Double.parseDouble(omega));
 
     if (!gausSeidel.makeDominant()) {
       writer.println("The system isn't diagonally dominant: " + 
                      "The method cannot guarantee convergence.");
     }
 
+    Checkpoint checkpoint = null;
+    if (checkpointPath != null) {
+      checkpoint = new Checkpoint(checkpointPath, gausSeidel.rows());
+      if (resume && gausSeidel.resume(checkpoint))
+        writer.println("Resuming from iteration " + checkpoint.getIteration());
+      gausSeidel.setCheckpoint(checkpoint, checkpointInterval);
+    }
+
     writer.println();
+
+    if (batch != null) {
+      int n = gausSeidel.rows();
+      SystemReader reader = new SystemReader(new FileInputStream(batch));
+      double[][] B = new double[reader.nextInt()][n];
+      for (int c = 0; c < B.length; c++)
+        for (int i = 0; i < n; i++)
+          B[c][i] = reader.nextDouble();
+
+      long start = System.nanoTime();
+      SolveResult[] results = gausSeidel.solve(B);
+      for (int c = 0; c < B.length; c++) {
+        IterationListener.PRINT.iteration(c, results[c].getSolution(), 0);
+        writer.println(results[c]);
+      }
+      writer.println(B.length + " systems in " + (System.nanoTime() - start) / 1e9 + " s");
+      return;
+    }
+
+    if (mixed) {
+      IterativeRefinement refinement = new IterativeRefinement(M, false);
+      refinement.setTolerance(tolerance);
+      refinement.setMaxIterations(maxIterations);
+      refinement.setRelaxation(Double.parseDouble(omega));
+      SolveResult result = refinement.solve();
+      IterationListener.PRINT.iteration(result.getIterations() - 1, result.getSolution(), 0);
+      writer.println(result + ", refinements = " + refinement.getRefinements());
+      return;
+    }
+
+    if (quiet) {
+      IterationListener listener = every > 0 ? IterationListener.PRINT : null;
+      SolveResult result = gausSeidel.solve(listener, every);
+      IterationListener.PRINT.iteration(result.getIterations() - 1, result.getSolution(), 0);
+      writer.println(result + ", omega = " + gausSeidel.getRelaxation());
+      if (checkpoint != null)
+        checkpoint.close();
+      return;
+    }
+
     gausSeidel.print();
     gausSeidel.solve();
+    if (checkpoint != null)
+      checkpoint.close();
   }
 }
 
@@ -0,0 +1,157 @@
+/*
+ *  Copyright (C) 2012 Rafael Rendón Pablo <smart.rendon@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* * Measures the throughput of HornerKernel against the plain Horner loop
+ * one point at a time. */
+
+/*
+  How to use:
+  $ java --add-modules jdk.incubator.vector HornerBenchmark [points] [degree] [passes]
+
+  Defaults to 1000000 points, degree 20 and 10 passes, random coefficients
+  and points in [-1, 1] (the complex points in the unit square). Every
+  line shows millions of points per second with f and f', the speedup over
+  the plain loop and the largest difference of f from it, relative to
+  |a_0| + |a_1| |x| + ... + |a_n| |x|^n.
+*/
+
+import java.util.Random;
+
+public class HornerBenchmark {
+
+  // The plain loop, one point at a time
+  private static void plain(double[] poly, int n, double[] x, double[] f,
+                            double[] df)
+  {
+    for (int k = 0; k < x.length; k++) {
+      double p = poly[n], d = 0;
+      for (int i = n - 1; i >= 0; i--) {
+        d = d * x[k] + p;
+        p = p * x[k] + poly[i];
+      }
+      f[k] = p;
+      df[k] = d;
+    }
+  }
+
+  private static void plain(double[] poly, int n, double[] xr, double[] xi,
+                            double[] fr, double[] fi, double[] dr,
+                            double[] di)
+  {
+    for (int k = 0; k < xr.length; k++) {
+      double pr = poly[n], pi = 0, qr = 0, qi = 0;
+      for (int i = n - 1; i >= 0; i--) {
+        double t = qr * xr[k] - qi * xi[k] + pr;
+        qi = qr * xi[k] + qi * xr[k] + pi;
+        qr = t;
+        t = pr * xr[k] - pi * xi[k] + poly[i];
+        pi = pr * xi[k] + pi * xr[k];
+        pr = t;
+      }
+      fr[k] = pr;
+      fi[k] = pi;
+      dr[k] = qr;
+      di[k] = qi;
+    }
+  }
+
+  private static void report(String name, double seconds, double base,
+                             double points, double diff)
+  {
+    System.out.printf("%-26s %8.1f Mpoints/s  speedup %5.2f  diff %.2e%n",
+                      name, points / seconds / 1e6, base / seconds, diff);
+  }
+
+  public static void main(String[] args)
+  {
+    int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+    int n = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+    int passes = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+    Random random = new Random(1);
+    double[] poly = new double[n + 1], abs = new double[n + 1];
+    for (int i = 0; i <= n; i++) {
+      poly[i] = 2 * random.nextDouble() - 1;
+      abs[i] = Math.abs(poly[i]);
+    }
+
+    double[] xr = new double[count], xi = new double[count];
+    double[] modulus = new double[count], bound = new double[count];
+    for (int k = 0; k < count; k++) {
+      xr[k] = 2 * random.nextDouble() - 1;
+      xi[k] = 2 * random.nextDouble() - 1;
+    }
+
+    double[] f0 = new double[count], d0 = new double[count];
+    double[] f1 = new double[count], d1 = new double[count];
+    double[] g0 = new double[count], e0 = new double[count];
+    double[] g1 = new double[count], e1 = new double[count];
+    HornerKernel[] kernels = {HornerKernel.SCALAR, HornerKernel.DEFAULT};
+    String[] names = {"scalar", HornerKernel.DEFAULT.getClass().getSimpleName()};
+    System.out.println(count + " points, degree " + n + ", " + passes + " passes");
+
+    // Real points
+    HornerKernel.SCALAR.evaluate(abs, 0, n, xr, 0, count, bound, d1);
+    for (int w = 0; w < 3; w++) // Warm up
+      plain(poly, n, xr, f0, d0);
+    long start = System.nanoTime();
+    for (int s = 0; s < passes; s++)
+      plain(poly, n, xr, f0, d0);
+    double base = (System.nanoTime() - start) / 1e9;
+    report("real plain", base, base, (double)count * passes, 0);
+
+    for (int m = 0; m < kernels.length; m++) {
+      for (int w = 0; w < 3; w++)
+        kernels[m].evaluate(poly, 0, n, xr, 0, count, f1, d1);
+      start = System.nanoTime();
+      for (int s = 0; s < passes; s++)
+        kernels[m].evaluate(poly, 0, n, xr, 0, count, f1, d1);
+      double seconds = (System.nanoTime() - start) / 1e9;
+
+      double diff = 0;
+      for (int k = 0; k < count; k++)
+        diff = Math.max(diff, Math.abs(f1[k] - f0[k]) / bound[k]);
+      report("real " + names[m], seconds, base, (double)count * passes, diff);
+    }
+
+    // Complex points
+    for (int k = 0; k < count; k++)
+      modulus[k] = Math.hypot(xr[k], xi[k]);
+    HornerKernel.SCALAR.evaluate(abs, 0, n, modulus, 0, count, bound, d1);
+    for (int w = 0; w < 3; w++)
+      plain(poly, n, xr, xi, f0, d0, g0, e0);
+    start = System.nanoTime();
+    for (int s = 0; s < passes; s++)
+      plain(poly, n, xr, xi, f0, d0, g0, e0);
+    base = (System.nanoTime() - start) / 1e9;
+    report("complex plain", base, base, (double)count * passes, 0);
+
+    for (int m = 0; m < kernels.length; m++) {
+      for (int w = 0; w < 3; w++)
+        kernels[m].evaluate(poly, 0, n, xr, xi, 0, count, f1, d1, g1, e1);
+      start = System.nanoTime();
+      for (int s = 0; s < passes; s++)
+        kernels[m].evaluate(poly, 0, n, xr, xi, 0, count, f1, d1, g1, e1);
+      double seconds = (System.nanoTime() - start) / 1e9;
+
+      double diff = 0;
+      for (int k = 0; k < count; k++)
+        diff = Math.max(diff, Math.hypot(f1[k] - f0[k], d1[k] - d0[k]) / bound[k]);
+      report("complex " + names[m], seconds, base, (double)count * passes, diff);
+    }
+  }
+}
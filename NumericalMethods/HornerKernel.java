@@ -0,0 +1,199 @@
+/*
+ *  Copyright (C) 2012 Rafael Rendón Pablo <smart.rendon@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* * Evaluates a polynomial and its derivative at many points at once, for
+ * plotting it or checking a lot of roots. */
+
+/*
+  How to use:
+  double[] f = new double[count], df = new double[count];
+  HornerKernel.DEFAULT.evaluate(poly, 0, n, x, 0, count, f, df);
+
+  Horner's rule f = f * x + a[i] is a chain where every multiply-add waits
+  for the one before, so a single point runs at the latency of the
+  multiply-add, not at its throughput. Here the points are the unit of
+  work: several of them go through the coefficients together, each with
+  its own f and f', and the chains are independent. DEFAULT uses the
+  Vector API (VectorHornerKernel) the same way RowKernel.DEFAULT does, with
+  one point per lane, and the scalar loop otherwise (-Dhornerkernel=scalar
+  forces it). The results are the same as the plain Horner loop, except
+  that the Vector API fuses the multiply and the add.
+
+  $ java --add-modules jdk.incubator.vector HornerBenchmark
+*/
+
+public interface HornerKernel {
+
+  /**
+   * f[k] = p(x[k]) and df[k] = p'(x[k]) for k = from..to-1, where p(x) =
+   * poly[offset] + poly[offset+1] * x + ... + poly[offset+n] * x^n.
+  */
+  void evaluate(double[] poly, int offset, int n, double[] x, int from,
+                int to, double[] f, double[] df);
+
+  /**
+   * Same for the complex points xr[k] + xi[k] * i, p(z) goes to fr + fi * i
+   * and p'(z) to dr + di * i.
+  */
+  void evaluate(double[] poly, int offset, int n, double[] xr, double[] xi,
+                int from, int to, double[] fr, double[] fi, double[] dr,
+                double[] di);
+
+  /**
+   * Largest relative residual |p(z)| / (|a_0| + |a_1| |z| + ... + |a_n|
+   * |z|^n) of the roots re[k] + im[k] * i, k < count, as returned by
+   * LinBairstow.roots(). About the machine epsilon for a root that is exact
+   * for slightly perturbed coefficients; NaN if some root is NaN.
+  */
+  default double maxResidual(double[] poly, int offset, int n, double[] re,
+                             double[] im, int count)
+  {
+    double[] fr = new double[count], fi = new double[count];
+    double[] dr = new double[count], di = new double[count];
+    double[] modulus = new double[count], bound = new double[count];
+    double[] abs = new double[n + 1];
+
+    for (int i = 0; i <= n; i++)
+      abs[i] = Math.abs(poly[offset + i]);
+    for (int k = 0; k < count; k++)
+      modulus[k] = Math.hypot(re[k], im[k]);
+
+    evaluate(poly, offset, n, re, im, 0, count, fr, fi, dr, di);
+    evaluate(abs, 0, n, modulus, 0, count, bound, dr);
+
+    double worst = 0;
+    for (int k = 0; k < count; k++) {
+      double error = Math.hypot(fr[k], fi[k]) / bound[k];
+      if (!(error <= worst))
+        worst = error;
+    }
+
+    return worst;
+  }
+
+  /** Four real or two complex points per pass. */
+  HornerKernel SCALAR = new HornerKernel() {
+    public void evaluate(double[] poly, int offset, int n, double[] x,
+                         int from, int to, double[] f, double[] df)
+    {
+      double top = poly[offset + n];
+      int k = from;
+      for (; k + 3 < to; k += 4) {
+        double x0 = x[k], x1 = x[k + 1], x2 = x[k + 2], x3 = x[k + 3];
+        double f0 = top, f1 = top, f2 = top, f3 = top;
+        double d0 = 0, d1 = 0, d2 = 0, d3 = 0;
+        for (int i = offset + n - 1; i >= offset; i--) {
+          double a = poly[i];
+          d0 = d0 * x0 + f0;
+          d1 = d1 * x1 + f1;
+          d2 = d2 * x2 + f2;
+          d3 = d3 * x3 + f3;
+          f0 = f0 * x0 + a;
+          f1 = f1 * x1 + a;
+          f2 = f2 * x2 + a;
+          f3 = f3 * x3 + a;
+        }
+        f[k] = f0;
+        f[k + 1] = f1;
+        f[k + 2] = f2;
+        f[k + 3] = f3;
+        df[k] = d0;
+        df[k + 1] = d1;
+        df[k + 2] = d2;
+        df[k + 3] = d3;
+      }
+
+      for (; k < to; k++) {
+        double x0 = x[k], f0 = top, d0 = 0;
+        for (int i = offset + n - 1; i >= offset; i--) {
+          d0 = d0 * x0 + f0;
+          f0 = f0 * x0 + poly[i];
+        }
+        f[k] = f0;
+        df[k] = d0;
+      }
+    }
+
+    public void evaluate(double[] poly, int offset, int n, double[] xr,
+                         double[] xi, int from, int to, double[] fr,
+                         double[] fi, double[] dr, double[] di)
+    {
+      double top = poly[offset + n];
+      int k = from;
+      for (; k + 1 < to; k += 2) {
+        double r0 = xr[k], i0 = xi[k], r1 = xr[k + 1], i1 = xi[k + 1];
+        double fr0 = top, fi0 = 0, dr0 = 0, di0 = 0;
+        double fr1 = top, fi1 = 0, dr1 = 0, di1 = 0;
+        for (int i = offset + n - 1; i >= offset; i--) {
+          double a = poly[i];
+          double t0 = dr0 * r0 - di0 * i0 + fr0;
+          double t1 = dr1 * r1 - di1 * i1 + fr1;
+          di0 = dr0 * i0 + di0 * r0 + fi0;
+          di1 = dr1 * i1 + di1 * r1 + fi1;
+          dr0 = t0;
+          dr1 = t1;
+          t0 = fr0 * r0 - fi0 * i0 + a;
+          t1 = fr1 * r1 - fi1 * i1 + a;
+          fi0 = fr0 * i0 + fi0 * r0;
+          fi1 = fr1 * i1 + fi1 * r1;
+          fr0 = t0;
+          fr1 = t1;
+        }
+        fr[k] = fr0;
+        fi[k] = fi0;
+        dr[k] = dr0;
+        di[k] = di0;
+        fr[k + 1] = fr1;
+        fi[k + 1] = fi1;
+        dr[k + 1] = dr1;
+        di[k + 1] = di1;
+      }
+
+      for (; k < to; k++) {
+        double r0 = xr[k], i0 = xi[k];
+        double fr0 = top, fi0 = 0, dr0 = 0, di0 = 0;
+        for (int i = offset + n - 1; i >= offset; i--) {
+          double t = dr0 * r0 - di0 * i0 + fr0;
+          di0 = dr0 * i0 + di0 * r0 + fi0;
+          dr0 = t;
+          t = fr0 * r0 - fi0 * i0 + poly[i];
+          fi0 = fr0 * i0 + fi0 * r0;
+          fr0 = t;
+        }
+        fr[k] = fr0;
+        fi[k] = fi0;
+        dr[k] = dr0;
+        di[k] = di0;
+      }
+    }
+  };
+
+  HornerKernel DEFAULT = load();
+
+  static HornerKernel load()
+  {
+    if ("scalar".equals(System.getProperty("hornerkernel")))
+      return SCALAR;
+
+    try {
+      return (HornerKernel)Class.forName("VectorHornerKernel")
+                                .getDeclaredConstructor().newInstance();
+    } catch (Exception | LinkageError e) { // No class or no module
+      return SCALAR;
+    }
+  }
+}
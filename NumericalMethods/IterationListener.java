@@ -0,0 +1,41 @@
+/*
+ *  Copyright (C) 2012 Rafael Rendón Pablo <smart.rendon@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* * Receives the approximations of an iterative method while it runs,
+ * instead of printing every one of them. */
+
+public interface IterationListener {
+
+  /**
+   * Called after iteration k (0, 1, 2, ...) with the current approximation
+   * X and the largest change of a component in that iteration. X must not
+   * be kept, the solver overwrites it.
+  */
+  void iteration(int k, double[] X, double change);
+
+  /** Prints X_k = {x_1 x_2 ... x_n }, the output of solve(). */
+  IterationListener PRINT = new IterationListener() {
+    public void iteration(int k, double[] X, double change)
+    {
+      StringBuilder line = new StringBuilder("X_" + k + " = {");
+      for (int i = 0; i < X.length; i++)
+        line.append(X[i]).append(' ');
+      line.append('}');
+      System.out.println(line);
+    }
+  };
+}
@@ -0,0 +1,163 @@
+/*
+ *  Copyright (C) 2012 Rafael Rendón Pablo <smart.rendon@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* * This class solves a dense system with Jacobi or Gauss-Seidel sweeps
+ * over a float copy of the matrix, and refines the answer with residuals
+ * computed in double precision (mixed precision iterative refinement). */
+
+/*
+  The sweeps are limited by the memory bandwidth: every sweep reads the
+  whole matrix. In float that's half the bytes, but the float matrix is a
+  slightly different system, A + E, so its solution is only good to about
+  1e-7. Iterative refinement fixes that:
+
+    r = b - A * x          in double, one pass over A
+    solve (A + E) * d = r  with float sweeps, only to a few digits
+    x = x + d
+
+  Every step multiplies the error by about ||A^-1 * E|| (~1e-7 times the
+  condition number) plus the precision of the inner solve, so a few steps
+  reach the double precision tolerance, while almost all the passes over
+  the matrix are float sweeps.
+
+  If every entry of A is exactly a float (integers, short decimals in
+  binary, stencils) the float copy is A itself and the residuals are also
+  computed from it, then the double matrix isn't needed at all:
+
+  $ java GaussSeidel -float -quiet < equations.txt
+  $ java Jacobi -float -quiet -tol 1e-12 < equations.txt
+*/
+
+public class IterativeRefinement {
+  public static final int MAX_REFINEMENTS = 30;
+
+  private AugmentedMatrix M; // The system, double precision
+  private FloatMatrix F;     // The sweeps run over this one
+  private boolean jacobi;
+  private double omega = 1;
+  private double tolerance = 1e-12;
+  private double innerTolerance = 1e-4;
+  private int maxIterations = 10000;
+  private int refinements;
+
+  /**
+   * M is the system in double precision (or an exact FloatMatrix), the
+   * float copy is made on the first solve, after any rearrangement of the
+   * rows of M.
+  */
+  public IterativeRefinement(AugmentedMatrix M, boolean jacobi)
+  {
+    this.M = M;
+    this.jacobi = jacobi;
+  }
+
+  /** Relative residual ||b - A * x|| / ||b|| of the answer. */
+  public void setTolerance(double tolerance) { this.tolerance = tolerance; }
+
+  /**
+   * Each inner solve stops when the change of the correction is below
+   * this fraction of it. 1e-4 by default, smaller than ~1e-6 is wasted
+   * because of the float matrix.
+  */
+  public void setInnerTolerance(double innerTolerance)
+  {
+    this.innerTolerance = innerTolerance;
+  }
+
+  /** Maximum number of sweeps, counting all the inner solves. */
+  public void setMaxIterations(int maxIterations)
+  {
+    this.maxIterations = maxIterations;
+  }
+
+  public void setRelaxation(double omega) { this.omega = omega; }
+
+  /** Refinement steps of the last solve. */
+  public int getRefinements() { return refinements; }
+
+  /**
+   * Solves M * x = b. The iterations of the result are the float sweeps,
+   * the residual is computed in double.
+  */
+  public SolveResult solve()
+  {
+    long start = System.nanoTime();
+    int n = M.rows();
+    if (F == null)
+      F = M instanceof FloatMatrix && ((FloatMatrix)M).isExact()
+          ? (FloatMatrix)M : new FloatMatrix(M);
+
+    double[] X = new double[n];
+    double[] R = new double[n];  // b - M * X
+    double[] D = new double[n];  // Correction
+    double[] P = jacobi ? new double[n] : D;
+    double[] delta = new double[1];
+    double normB = 0;
+
+    for (int i = 0; i < n; i++) {
+      R[i] = M.get(i, n);
+      normB = Math.max(normB, Math.abs(R[i]));
+    }
+    if (normB == 0)
+      normB = 1;
+
+    int sweeps = 0;
+    double residual = max(R) / normB;
+    refinements = 0;
+
+    while (residual > tolerance && sweeps < maxIterations
+           && refinements < MAX_REFINEMENTS) {
+      java.util.Arrays.fill(D, 0);
+      java.util.Arrays.fill(P, 0);
+
+      // Inner solve (A + E) * D = R, float matrix, double vectors
+      do {
+        delta[0] = 0;
+        F.blockSweep(P, D, R, 1, omega, delta);
+        if (jacobi) {
+          double[] T = P;
+          P = D;
+          D = T;
+        }
+        sweeps++;
+      } while (delta[0] > innerTolerance * max(P) && sweeps < maxIterations);
+
+      for (int i = 0; i < n; i++)
+        X[i] += P[i];
+      refinements++;
+
+      // The residual of the double system
+      for (int i = 0; i < n; i++)
+        R[i] = M.offDiagonalSum(i, X) - M.get(i, i) * X[i];
+
+      double last = residual;
+      residual = max(R) / normB;
+      if (residual >= last)
+        break; // Rounding error of the residual itself, or no convergence
+    }
+
+    return new SolveResult(X, sweeps, residual, System.nanoTime() - start);
+  }
+
+  private static double max(double[] x)
+  {
+    double max = 0;
+    for (int i = 0; i < x.length; i++)
+      max = Math.max(max, Math.abs(x[i]));
+    return max;
+  }
+}
@@ -36,80 +36,229 @@
 
   If the matrix isn't diagonally dominant the program tries
   to convert it(if possible) by rearranging the rows.
+
+  For systems with few nonzeros per row use the sparse storage, the rows
+  are read straight into it and the zeros are dropped, so the dense matrix
+  is never in memory (the input still has n + 1 numbers per row, for big
+  systems the Matrix Market format below is much shorter):
+
+  $ java Jacobi -sparse < equations.txt
+
+  Dense systems can also be stored in a single array, or outside the Java
+  heap for systems bigger than the heap:
+
+  $ java Jacobi -flat < equations.txt
+  $ java Jacobi -offheap < equations.txt
+
+  The coefficients can be decimal numbers (0.25, -1.5e-3). Big systems
+  load much faster from the binary format written by SystemReader:
+
+  $ java Jacobi -bin equations.bin
+
+  Sparse matrices in Matrix Market coordinate format are read directly
+  into the sparse storage, b from another file (see MatrixMarketReader):
+
+  $ java Jacobi -mtx matrix.mtx -rhs b.mtx -quiet
+
+  To solve the same matrix for many right hand sides, put the number of
+  them, k, and then the k vectors of n values in a file:
+
+  $ java Jacobi -batch vectors.txt < equations.txt
+
+  Rows are independent, so the sweep can be split among several threads:
+
+  $ java Jacobi -threads 8 < equations.txt
+
+  Or without waiting for each other at the end of every sweep: each
+  thread relaxes its rows with the latest values of the other rows, and
+  the main thread stops them when the system converges (asynchronous
+  Jacobi, converges for diagonally dominant systems). It can't be
+  checkpointed:
+
+  $ java Jacobi -threads 8 -async -quiet -tol 1e-12 < equations.txt
+
+  Printing every approximation is slow for big systems. With -quiet only
+  the solution, the number of iterations, the residual and the time are
+  printed (and X_k every k iterations with -every k). The tolerance is
+  relative to max |x_i|, or to ||b|| with -residual:
+
+  $ java Jacobi -quiet -tol 1e-10 -residual -max 5000 < equations.txt
+
+  Dense systems can be swept over a float copy of the matrix, half the
+  bytes per sweep, with residuals in double so the answer still meets the
+  tolerance (see IterativeRefinement). The system is read as floats, and
+  a double copy is only kept if some entry isn't exactly a float:
+
+  $ java Jacobi -float -quiet -tol 1e-12 < equations.txt
+
+  Long runs can save their state every k iterations to a file, and
+  continue from it if they are killed (see Checkpoint):
+
+  $ java Jacobi -quiet -checkpoint run.ckpt -interval 100 < equations.txt
+  $ java Jacobi -quiet -checkpoint run.ckpt -resume < equations.txt
 */
 
 
 import java.io.*;
-import java.util.Arrays;
-import java.util.StringTokenizer;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.RecursiveTask;
 
 public class Jacobi {
 
   public static final int MAX_ITERATIONS = 100;
-  private double[][] M;
+  public static final int STEP = 0;     // Stopping criteria
+  public static final int RESIDUAL = 1;
+  public static final long MONITOR_INTERVAL = 200000; // ns between checks
+  private static final VarHandle ELEMENT =
+      MethodHandles.arrayElementVarHandle(double[].class);
+  private AugmentedMatrix M;
+  private SparseMatrix S; // Used instead of M when the system is sparse
+  private int[] order;    // Rows chosen by makeDominant()
+  private double[] initial;
+  private Checkpoint checkpoint;
+  private int checkpointInterval;
+  private boolean resumed;    // Continue the state loaded by resume()
+  private int resumeIteration;
+  private int threads = 1;
+  private double tolerance = 1e-15;
+  private int criterion = STEP;
+  private int maxIterations = MAX_ITERATIONS;
+  private boolean asynchronous;
+
+  // Asynchronous solve
+  private volatile boolean stop;
   
-  public Jacobi(double [][] matrix) { M = matrix; }
+  public Jacobi(double [][] matrix) { M = new ArrayMatrix(matrix); }
+
+  public Jacobi(AugmentedMatrix matrix) { M = matrix; }
+
+  public Jacobi(SparseMatrix matrix) { S = matrix; }
+
+  /** Number of equations. */
+  public int rows() { return S != null ? S.rows() : M.rows(); }
 
   public void print()
   {
-    int n = M.length;
+    if (S != null) {
+      S.print();
+      return;
+    }
+
+    int n = M.rows();
     for (int i = 0; i < n; i++) {
       for (int j = 0; j < n + 1; j++)
-        System.out.print(M[i][j] + " ");
+        System.out.print(M.get(i, j) + " ");
       System.out.println();
     }
   }
 
-  public boolean transformToDominant(int r, boolean[] V, int[] R)
+  /**
+   * Returns true if is possible to transform M(data member) to a diagonally
+   * dominant matrix, false otherwise.
+  */
+  public boolean makeDominant()
   {
-    int n = M.length;
-    if (r == M.length) {
-      double[][] T = new double[n][n+1];
-      for (int i = 0; i < R.length; i++) {
-        for (int j = 0; j < n + 1; j++)
-          T[i][j] = M[R[i]][j];
-      }
+    if (S != null) {
+      int[] R = S.dominantRows();
+      if (R == null)
+        return false;
 
-      M = T;
-      
+      S = S.permuteRows(R);
+      reorder(R);
       return true;
     }
 
-    for (int i = 0; i < n; i++) {
-      if (V[i]) continue;
+    int[] R = AugmentedMatrix.dominantRows(M);
+    if (R == null)
+      return false;
+
+    M.permuteRows(R);
+    reorder(R);
 
-      double sum = 0;
-      
-      for (int j = 0; j < n; j++)
-        sum += Math.abs(M[i][j]);
+    return true;
+  }
 
-      if (2 * Math.abs(M[i][r]) > sum) { // diagonally dominant?
-        V[i] = true;
-        R[r] = i;
+  // order[r] = row of the original system that is now row r
+  private void reorder(int[] R)
+  {
+    int n = R.length;
+    int[] next = new int[n];
+    for (int r = 0; r < n; r++)
+      next[r] = order == null ? R[r] : order[R[r]];
 
-        if (transformToDominant(r + 1, V, R))
-          return true;
+    order = next;
+  }
 
-        V[i] = false;
-      }
+  /**
+   * Saves the state every interval iterations of the next solves, null
+   * stops saving.
+  */
+  public void setCheckpoint(Checkpoint checkpoint, int interval)
+  {
+    this.checkpoint = checkpoint;
+    this.checkpointInterval = Math.max(1, interval);
+  }
+
+  /**
+   * Continues from the latest checkpoint in the file: the rows go back to
+   * the order saved, and the next solve starts from the saved X and
+   * iteration. Returns false if there's no checkpoint.
+  */
+  public boolean resume(Checkpoint checkpoint)
+  {
+    if (!checkpoint.load())
+      return false;
+
+    // Row r must be the original row saved[r], now it is order[r]
+    int[] saved = checkpoint.getOrder();
+    int n = rows();
+    int[] position = new int[n];
+    for (int r = 0; r < n; r++)
+      position[order == null ? r : order[r]] = r;
+
+    int[] R = new int[n];
+    boolean same = true;
+    for (int r = 0; r < n; r++) {
+      R[r] = position[saved[r]];
+      same &= R[r] == r;
+    }
+
+    if (!same) {
+      if (S != null)
+        S = S.permuteRows(R);
+      else
+        M.permuteRows(R);
+      reorder(R);
     }
 
-    return false;
+    initial = checkpoint.getSolution();
+    resumeIteration = checkpoint.getIteration();
+    resumed = true;
+    return true;
   }
-  
-  
+
   /**
-   * Returns true if is possible to transform M(data member) to a diagonally
-   * dominant matrix, false otherwise.
+   * Solves the system for every right hand side B[c] (given in the order
+   * of the rows before makeDominant()), iterating all of them as a block
+   * that reads the matrix once per sweep. Uses the STEP criterion.
   */
-  public boolean makeDominant()
+  public SolveResult[] solve(double[][] B)
   {
-    boolean[] visited = new boolean[M.length];
-    int[] rows = new int[M.length];
+    int n = rows();
+    if (order == null) {
+      order = new int[n];
+      for (int r = 0; r < n; r++)
+        order[r] = r;
+    }
 
-    Arrays.fill(visited, false);
+    BlockSolver block = new BlockSolver(M, S, order, true);
+    block.setTolerance(tolerance);
+    block.setMaxIterations(maxIterations);
 
-    return transformToDominant(0, visited, rows);
+    return block.solve(B);
   }
 
 
@@ -126,81 +275,484 @@ public class Jacobi {
   */
   public void solve()
   {
+    solve(IterationListener.PRINT, 1);
+  }
+
+  /**
+   * Same as solve() but without printing, the listener (may be null) is
+   * called every interval iterations instead. Stops when the criterion
+   * (STEP or RESIDUAL) is below the tolerance, or after maxIterations.
+   * The interval must be positive when there is a listener.
+  */
+  public SolveResult solve(IterationListener listener, int interval)
+  {
+    if (listener != null && interval <= 0)
+      throw new IllegalArgumentException("The interval must be positive: " + interval);
+
+    if (asynchronous)
+      return solveAsynchronous(listener, interval);
+
+    long start = System.nanoTime();
     int iterations = 0;
-    int n = M.length;
-    double epsilon = 1e-15;
+    int n = S != null ? S.rows() : M.rows();
     double[] X = new double[n]; // Approximations
-    double[] P = new double[n]; // Prev
-    Arrays.fill(X, 0);
-    Arrays.fill(P, 0);
+    double[] P = initial != null ? initial.clone() : new double[n]; // Prev
+    ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+
+    if (resumed) {
+      iterations = resumeIteration;
+      resumed = false;
+    }
 
     while (true) {
-      for (int i = 0; i < n; i++) {
-        double sum = M[i][n]; // b_n
+      double delta; // Largest |X[i] - P[i]|
+
+      if (pool != null)
+        delta = pool.invoke(new RowBlock(P, X, 0, n, grain(n)));
+      else
+        delta = sweep(P, X, 0, n);
 
-        for (int j = 0; j < n; j++)
-          if (j != i)
-            sum -= M[i][j] * P[j];
+      if (listener != null && iterations % interval == 0)
+        listener.iteration(iterations, X, delta);
+
+      iterations++;
+      if (converged(X, delta) || iterations >= maxIterations) break;
 
-        // Update x_i but it's no used in the next row calculation
-        // but up to de next iteration of the method
-        X[i] = 1/M[i][i] * sum;
+      // X becomes the previous approximation, the old P is overwritten
+      double[] T = P;
+      P = X;
+      X = T;
+
+      if (checkpoint != null && iterations % checkpointInterval == 0)
+        checkpoint.save(iterations, 1, 0, order, P);
+    }
+
+    if (pool != null)
+      pool.shutdown();
+
+    return new SolveResult(X, iterations, residual(X),
+                           System.nanoTime() - start);
+  }
+
+  /**
+   * Every thread owns a range of rows and sweeps it over and over, in
+   * place, reading the latest values the other threads wrote (see
+   * SparseMatrix.asynchronousSweep()), with no barrier between sweeps.
+   * This thread is the monitor: it checks the convergence estimate every
+   * MONITOR_INTERVAL ns and stops the workers, also when the slowest one
+   * reaches maxIterations. For diagonally dominant matrices the iteration
+   * converges whatever the order and delays of the updates (chaotic
+   * relaxation). The listener gets a snapshot of X every interval checks,
+   * and the solution. The iterations are the sweeps of the slowest
+   * thread. There is no checkpoint, the threads have no common iteration
+   * to save.
+  */
+  private SolveResult solveAsynchronous(IterationListener listener,
+                                        int interval)
+  {
+    long start = System.nanoTime();
+    int n = rows();
+    double[] X = initial != null ? initial.clone() : new double[n];
+    Worker[] workers = new Worker[Math.min(threads, n)];
+
+    stop = false;
+    for (int w = 0; w < workers.length; w++) {
+      workers[w] = new Worker(X, (int)((long)w * n / workers.length),
+                              (int)((long)(w + 1) * n / workers.length));
+      workers[w].start();
+    }
+
+    int checks = 0;
+    for (; !stop; checks++) {
+      LockSupport.parkNanos(MONITOR_INTERVAL);
+
+      // Largest change of the last complete sweep of every worker
+      double delta = 0;
+      int sweeps = Integer.MAX_VALUE;
+      for (Worker worker : workers) {
+        delta = Math.max(delta, worker.delta);
+        sweeps = Math.min(sweeps, worker.sweeps);
       }
 
-      System.out.print("X_" + iterations + " = {");
-      for (int i = 0; i < n; i++)
-        System.out.print(X[i] + " ");
-      System.out.println("}");
+      if (listener != null && checks % interval == 0)
+        listener.iteration(checks, X.clone(), delta);
 
-      iterations++;
-      if (iterations == 1) continue;
+      // A worker that stopped first would leave the others with old values
+      if (sweeps >= maxIterations || sweeps > 0 && confirmed(X, delta))
+        stop = true;
+    }
+
+    int iterations = Integer.MAX_VALUE;
+    for (Worker worker : workers) {
+      try {
+        worker.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      iterations = Math.min(iterations, worker.sweeps);
+    }
+
+    if (listener != null)
+      listener.iteration(checks, X, 0);
+
+    return new SolveResult(X, iterations, residual(X),
+                           System.nanoTime() - start);
+  }
+
+  /**
+   * The changes of the workers can be small because their rows converged
+   * against old values of the other rows, so the estimate is checked with
+   * one synchronous step from a copy of X.
+  */
+  private boolean confirmed(double[] X, double delta)
+  {
+    double[] Y = X.clone();
+    if (criterion == RESIDUAL)
+      return residual(Y) <= tolerance;
 
-      boolean stop = true;
-      for (int i = 0; i < n && stop; i++)
-        if (Math.abs(X[i] - P[i]) > epsilon)
-          stop = false;
+    if (!converged(Y, delta))
+      return false;
 
-      if (stop || iterations == MAX_ITERATIONS) break;
-      P = (double[])X.clone();
+    return converged(Y, sweep(Y, new double[Y.length], 0, Y.length));
+  }
+
+  /**
+   * Asynchronous sweep of the dense storage, rows from..to-1 in place.
+   * The row kernel reads X plainly (a double write isn't torn on 64-bit
+   * JVMs, and every sweep reads memory again), x_i is published opaque.
+  */
+  private double asynchronousSweep(double[] X, int from, int to)
+  {
+    if (S != null)
+      return S.asynchronousSweep(X, from, to);
+
+    double delta = 0;
+    for (int i = from; i < to; i++) {
+      double x = M.offDiagonalSum(i, X) / M.get(i, i);
+      delta = Math.max(delta, Math.abs(x - X[i]));
+      ELEMENT.setOpaque(X, i, x);
     }
+
+    return delta;
   }
 
-  public static void main(String[] args) throws IOException
+  /** Sweeps its rows until the monitor stops it. */
+  private class Worker extends Thread {
+    private double[] X;
+    private int from, to;
+    volatile double delta = Double.MAX_VALUE;
+    volatile int sweeps;
+
+    Worker(double[] X, int from, int to)
+    {
+      this.X = X;
+      this.from = from;
+      this.to = to;
+      setDaemon(true);
+    }
+
+    public void run()
+    {
+      while (!stop) {
+        double change = asynchronousSweep(X, from, to);
+        delta = change;
+        sweeps++;
+
+        // Nothing moves until the other rows change, let them run if they
+        // share the processor
+        double max = 0;
+        for (int i = from; i < to; i++)
+          max = Math.max(max, Math.abs(X[i]));
+        if (change <= tolerance * max)
+          Thread.yield();
+      }
+    }
+  }
+
+  /**
+   * Asynchronous relaxation with setThreads() workers instead of
+   * synchronous sweeps, see solveAsynchronous(). setCheckpoint() is
+   * ignored in this mode.
+  */
+  public void setAsynchronous(boolean asynchronous)
   {
-    int n;
-    double[][] M;
+    this.asynchronous = asynchronous;
+  }
 
-    BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
-    PrintWriter writer = new PrintWriter(System.out, true);
+  /**
+   * STEP: max |X[i] - P[i]| <= tolerance * max |X[i]|.
+   * RESIDUAL: ||b - M * X|| <= tolerance * ||b||, costs one more product
+   * with the matrix per iteration.
+  */
+  public void setTolerance(double tolerance, int criterion)
+  {
+    this.tolerance = tolerance;
+    this.criterion = criterion;
+  }
 
-    n = Integer.parseInt(reader.readLine());
-    M = new double[n][n+1];
+  public void setMaxIterations(int maxIterations)
+  {
+    this.maxIterations = maxIterations;
+  }
 
-    for (int i = 0; i < n; i++) {
-      StringTokenizer strtk = new StringTokenizer(reader.readLine());
+  /**
+   * Starts the next solves from X0 instead of zero, e.g. the solution of a
+   * similar system. null goes back to zero.
+  */
+  public void setInitialGuess(double[] X0)
+  {
+    initial = X0;
+  }
+
+  private boolean converged(double[] X, double delta)
+  {
+    if (criterion == RESIDUAL)
+      return residual(X) <= tolerance;
 
-      while (strtk.hasMoreTokens())
-      for (int j = 0; j < n + 1 && strtk.hasMoreTokens(); j++)
-        M[i][j] = Integer.parseInt(strtk.nextToken());
+    double max = 0;
+    for (int i = 0; i < X.length; i++)
+      max = Math.max(max, Math.abs(X[i]));
+
+    return delta <= tolerance * max;
+  }
+
+  /**
+   * Relative residual ||b - M * X|| / ||b||, maximum norm.
+  */
+  public double residual(double[] X)
+  {
+    if (S != null)
+      return S.residual(X);
+
+    return AugmentedMatrix.residual(M, X);
+  }
+
+  /**
+   * Number of worker threads used by solve(), 1 runs the sweep in the
+   * calling thread.
+  */
+  public void setThreads(int threads)
+  {
+    this.threads = Math.max(1, threads);
+  }
+
+  /**
+   * Computes rows from..to-1 of X using P, returns the largest change.
+  */
+  private double sweep(double[] P, double[] X, int from, int to)
+  {
+    if (S != null)
+      return S.jacobiSweep(P, X, from, to);
+
+    double delta = 0;
+    for (int i = from; i < to; i++) {
+      double sum = M.offDiagonalSum(i, P); // b_i - sum of a_ij * p_j
+
+      // Update x_i but it's no used in the next row calculation
+      // but up to de next iteration of the method
+      X[i] = 1/M.get(i, i) * sum;
+      delta = Math.max(delta, Math.abs(X[i] - P[i]));
+    }
+
+    return delta;
+  }
+
+  // Rows per task, a few tasks per thread to balance uneven rows
+  private int grain(int n)
+  {
+    return Math.max(16, n / (4 * threads));
+  }
+
+  /**
+   * Splits a range of rows until it is small enough and reduces the
+   * largest change of the halves.
+  */
+  private class RowBlock extends RecursiveTask<Double> {
+    private static final long serialVersionUID = 1L;
+    private double[] P, X;
+    private int from, to, grain;
+
+    RowBlock(double[] P, double[] X, int from, int to, int grain)
+    {
+      this.P = P;
+      this.X = X;
+      this.from = from;
+      this.to = to;
+      this.grain = grain;
     }
 
+    protected Double compute()
+    {
+      if (to - from <= grain)
+        return sweep(P, X, from, to);
 
-    
-    
-    
-    
-    Jacobi jacobi = new Jacobi(M);
+      int middle = (from + to) >>> 1;
+      RowBlock left = new RowBlock(P, X, from, middle, grain);
+      left.fork();
+      double right = new RowBlock(P, X, middle, to, grain).compute();
+
+      return Math.max(left.join(), right);
+    }
+  }
+
+  public static void main(String[] args) throws IOException
+  {
+    AugmentedMatrix M = null;
+    PrintWriter writer = new PrintWriter(System.out, true);
+
+    boolean sparse = false;
+    String storage = "array";
+    String binary = null;
+    String mtx = null;
+    String rhs = null;
+    String batch = null;
+    boolean quiet = false;
+    boolean mixed = false;
+    String checkpointPath = null;
+    int checkpointInterval = 100;
+    boolean resume = false;
+    boolean asynchronous = false;
+    int threads = 1;
+    int every = 0;
+    int criterion = STEP;
+    double tolerance = 1e-15;
+    int maxIterations = MAX_ITERATIONS;
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-sparse"))
+        sparse = true;
+      else if (args[i].equals("-flat") || args[i].equals("-offheap"))
+        storage = args[i].substring(1);
+      else if (args[i].equals("-bin") && i + 1 < args.length)
+        binary = args[++i];
+      else if (args[i].equals("-mtx") && i + 1 < args.length)
+        mtx = args[++i];
+      else if (args[i].equals("-rhs") && i + 1 < args.length)
+        rhs = args[++i];
+      else if (args[i].equals("-batch") && i + 1 < args.length)
+        batch = args[++i];
+      else if (args[i].equals("-threads") && i + 1 < args.length)
+        threads = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-quiet"))
+        quiet = true;
+      else if (args[i].equals("-float"))
+        mixed = true;
+      else if (args[i].equals("-checkpoint") && i + 1 < args.length)
+        checkpointPath = args[++i];
+      else if (args[i].equals("-interval") && i + 1 < args.length)
+        checkpointInterval = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-resume"))
+        resume = true;
+      else if (args[i].equals("-async"))
+        asynchronous = true;
+      else if (args[i].equals("-every") && i + 1 < args.length)
+        every = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-tol") && i + 1 < args.length)
+        tolerance = Double.parseDouble(args[++i]);
+      else if (args[i].equals("-residual"))
+        criterion = RESIDUAL;
+      else if (args[i].equals("-max") && i + 1 < args.length)
+        maxIterations = Integer.parseInt(args[++i]);
+    }
+
+    if (asynchronous && checkpointPath != null) {
+      System.err.println("-checkpoint can't be used with -async");
+      System.exit(1);
+    }
+
+    if (mixed) {
+      String ignored = (threads > 1 ? " -threads" : "") +
+                       (asynchronous ? " -async" : "") +
+                       (checkpointPath != null ? " -checkpoint" : "") +
+                       (sparse || mtx != null ? " -sparse -mtx" : "") +
+                       (batch != null ? " -batch" : "");
+      if (!ignored.isEmpty()) {
+        System.err.println("-float can't be used with" + ignored);
+        System.exit(1);
+      }
+    }
+
+    Jacobi jacobi;
+
+    if (mtx != null) {
+      jacobi = new Jacobi(MatrixMarketReader.read(mtx, rhs));
+    } else {
+      if (mixed)
+        storage = "mixed";
+      if (sparse && binary != null)
+        jacobi = new Jacobi(SystemReader.readBinarySparse(binary));
+      else if (sparse)
+        jacobi = new Jacobi(new SystemReader(System.in).readSparse());
+      else {
+        if (binary != null)
+          M = SystemReader.readBinary(binary, storage);
+        else
+          M = new SystemReader(System.in).readText(storage);
+        jacobi = new Jacobi(M);
+      }
+    }
+    jacobi.setThreads(threads);
+    jacobi.setAsynchronous(asynchronous);
+    jacobi.setTolerance(tolerance, criterion);
+    jacobi.setMaxIterations(maxIterations);
 
     if (!jacobi.makeDominant()) {
       writer.println("The system isn't diagonally dominant: " + 
                      "The method cannot guarantee convergence.");
     }
 
+    Checkpoint checkpoint = null;
+    if (checkpointPath != null) {
+      checkpoint = new Checkpoint(checkpointPath, jacobi.rows());
+      if (resume && jacobi.resume(checkpoint))
+        writer.println("Resuming from iteration " + checkpoint.getIteration());
+      jacobi.setCheckpoint(checkpoint, checkpointInterval);
+    }
+
     writer.println();
 
+    if (batch != null) {
+      int n = jacobi.rows();
+      SystemReader reader = new SystemReader(new FileInputStream(batch));
+      double[][] B = new double[reader.nextInt()][n];
+      for (int c = 0; c < B.length; c++)
+        for (int i = 0; i < n; i++)
+          B[c][i] = reader.nextDouble();
+
+      long start = System.nanoTime();
+      SolveResult[] results = jacobi.solve(B);
+      for (int c = 0; c < B.length; c++) {
+        IterationListener.PRINT.iteration(c, results[c].getSolution(), 0);
+        writer.println(results[c]);
+      }
+      writer.println(B.length + " systems in " + (System.nanoTime() - start) / 1e9 + " s");
+      return;
+    }
+
+    if (mixed) {
+      IterativeRefinement refinement = new IterativeRefinement(M, true);
+      refinement.setTolerance(tolerance);
+      refinement.setMaxIterations(maxIterations);
+      SolveResult result = refinement.solve();
+      IterationListener.PRINT.iteration(result.getIterations() - 1, result.getSolution(), 0);
+      writer.println(result + ", refinements = " + refinement.getRefinements());
+      return;
+    }
+
+    if (quiet) {
+      IterationListener listener = every > 0 ? IterationListener.PRINT : null;
+      SolveResult result = jacobi.solve(listener, every);
+      IterationListener.PRINT.iteration(result.getIterations() - 1, result.getSolution(), 0);
+      writer.println(result);
+      if (checkpoint != null)
+        checkpoint.close();
+      return;
+    }
+
     jacobi.print();
 
     jacobi.solve();
+    if (checkpoint != null)
+      checkpoint.close();
 
   }
 }
@@ -71,101 +71,224 @@
 // Execute the program with:
 //
 // $ java LinBairstow < input.txt
+//
+// The coefficients can be on any number of lines and the degree can be
+// anything. From Java, one LinBairstow object finds the roots of many
+// polynomials without allocating (it keeps its work arrays, they only
+// grow for a bigger degree than before), the roots go to arrays of the
+// caller:
+//
+//   LinBairstow solver = new LinBairstow(maxDegree);
+//   double[] re = new double[maxDegree], im = new double[maxDegree];
+//   int roots = solver.roots(a, n, re, im);  // re[k] + im[k] * i
+//   if (!solver.hasConverged()) ...          // maxIterations reached
+//
+// A pair of complex roots is stored as re + im*i followed by re - im*i.
+//
+// Bairstow's method takes the quadratic factors one by one and divides
+// them out, the errors of the first ones go into the next ones. From
+// degree ABERTH_DEGREE on the roots are found all at once with the
+// Aberth-Ehrlich method instead (see Aberth), -aberth d changes it:
+//
+// $ java LinBairstow -aberth 4 < input.txt
+//
+// -companion finds all the roots as the eigenvalues of the companion
+// matrix (see CompanionRoots), RootBenchmark compares the three methods:
+//
+// $ java LinBairstow -companion < input.txt
+//
+// -check also prints the largest relative residual of the roots, see
+// HornerKernel.maxResidual().
 
 import java.io.*;
 
 public class LinBairstow {
-  private double[] a;
+  public static final int MAX_ITERATIONS = 1000;
+  public static final int RESTART = 50; // Iterations before a new (u, v)
+  public static final int ABERTH_DEGREE = 10;
+  private double[] a;       // Polynomial being deflated
   private double[] b;
   private double[] c;
-  private int n;
+  private double[] p;       // Polynomial read by readInput()
+  private int n;            // and its degree
+  private double epsilon = 1e-8;
+  private int maxIterations = MAX_ITERATIONS;
+  private int iterations;
+  private boolean converged;
+  private Aberth aberth;    // For degrees >= aberthDegree
+  private int aberthDegree = ABERTH_DEGREE;
+  private CompanionRoots companion; // Instead of both if set
+  private boolean check;
 
   public LinBairstow()
   {
-    a = new double[20];
-    b = new double[20];
-    c = new double[20];
+    this(20);
+  }
+
+  /** Work arrays for polynomials up to the given degree. */
+  public LinBairstow(int degree)
+  {
+    a = new double[degree + 1];
+    b = new double[degree + 1];
+    c = new double[degree + 1];
   }
 
   public void readInput() throws IOException
   {
-    BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
-    n = Integer.parseInt(reader.readLine());
+    readInput(System.in);
+  }
 
-    String[] tokens = reader.readLine().split(" ");
+  /** Reads n and then a[0] a[1] ... a[n], separated by any blanks. */
+  public void readInput(InputStream in) throws IOException
+  {
+    SystemReader reader = new SystemReader(in);
+    n = reader.nextInt();
+    p = new double[n + 1];
 
     for (int i = 0; i < n + 1; i++)
-      a[i] = Double.parseDouble(tokens[i]);
+      p[i] = reader.nextDouble();
   }
 
-  public void solve()
+  /** Change of u and v (or r) below which a factor is accepted. */
+  public void setTolerance(double epsilon) { this.epsilon = epsilon; }
+
+  /** Iterations allowed for each factor. */
+  public void setMaxIterations(int maxIterations)
   {
-    int i, j;
-    double r1, r2, du, dv, u, v, r, dr;
-    double sq, det, nu, nv, error;
-    double epsilon = 1e-8;
+    this.maxIterations = maxIterations;
+  }
 
-    System.out.println("The polynomial is:");
-    for (i = n; i >= 0; i--) {
-      if (i == 0)
-        System.out.print(a[i]);
-      else
-        System.out.print(a[i] + "*x^" + i + "  ");
+  /**
+   * Polynomials of this degree or more are solved with the Aberth-Ehrlich
+   * method (see Aberth) instead of Bairstow's, 0 for all of them.
+  */
+  public void setAberthDegree(int degree) { aberthDegree = degree; }
+
+  /**
+   * If true every polynomial is solved with the eigenvalues of its
+   * companion matrix (see CompanionRoots).
+  */
+  public void setCompanion(boolean enabled)
+  {
+    companion = enabled ? new CompanionRoots() : null;
+  }
+
+  /** If true solve() also prints the largest residual of the roots. */
+  public void setCheck(boolean check) { this.check = check; }
+
+  /** Iterations of the last call to roots(), all the factors. */
+  public int getIterations() { return iterations; }
+
+  /**
+   * false if some factor of the last call to roots() reached
+   * maxIterations, its roots are the last approximation.
+  */
+  public boolean hasConverged() { return converged; }
+
+  /**
+   * Finds the roots of f(x) = poly[0] + poly[1] * x + ... + poly[n] * x^n,
+   * poly isn't modified. Root k is re[k] + im[k] * i, re and im need n
+   * elements. Returns the number of roots, less than n if poly[n] is 0.
+   * Allocates nothing unless n is bigger than every degree before.
+  */
+  public int roots(double[] poly, int n, double[] re, double[] im)
+  {
+    return roots(poly, 0, n, re, im);
+  }
+
+  /**
+   * Same as roots(poly, n, re, im) for the polynomial stored at
+   * poly[offset..offset+n], e.g. one of many in a single array.
+  */
+  public int roots(double[] poly, int offset, int n, double[] re, double[] im)
+  {
+    int i, m = 0;
+    double u, v, r, du, dv, dr, error;
+
+    while (n > 0 && poly[offset + n] == 0)
+      n--;
+
+    if (companion != null) {
+      m = companion.roots(poly, offset, n, re, im);
+      iterations = companion.getIterations();
+      converged = companion.hasConverged();
+      return m;
+    }
+
+    if (n >= aberthDegree) {
+      if (aberth == null)
+        aberth = new Aberth();
+      aberth.setMaxIterations(maxIterations);
+      m = aberth.roots(poly, offset, n, re, im);
+      iterations = aberth.getIterations();
+      converged = aberth.hasConverged();
+      return m;
+    }
+
+    if (a.length < n + 1) {
+      a = new double[n + 1];
+      b = new double[n + 1];
+      c = new double[n + 1];
+    }
+    System.arraycopy(poly, offset, a, 0, n + 1);
+    iterations = 0;
+    converged = true;
+
+    // x = 0 is a root, take out x
+    while (n > 0 && a[0] == 0) {
+      re[m] = im[m] = 0;
+      m++;
+      n--;
+      for (i = 0; i < n + 1; i++)
+        a[i] = a[i+1];
     }
 
-    System.out.print("\n\n");
     while (n > 3) {
       u = 0;
       v = 0;
       error = 1;
       c[n] = b[n] = a[n];
 
-      while (error > epsilon) {
-        b[n-1] = a[n-1] + u * b[n];
-        c[n-1] = b[n-1] + u * c[n];
+      // Geometric mean of |roots|, to restart near the roots
+      double radius = Math.pow(Math.abs(a[0] / a[n]), 1.0 / n);
+      int restarts = 0;
 
-        for (i = n - 2; i > 0; i--) {
-          b[i] = a[i] + u * b[i+1] + v * b[i+2];
-          c[i] = b[i] + u * c[i+1] + v * c[i+2];
+      for (int k = 0; !(error <= epsilon); k++) { // NaN doesn't stop it
+        if (k == maxIterations) {
+          converged = false;
+          break;
         }
 
-        b[0] = a[0] + u * b[1] + v * b[2];
+        // Diverged or stuck: start again from x^2 - 2r cos(t) x + r^2
+        if (!Double.isFinite(u + v) || k > 0 && k % RESTART == 0) {
+          restarts++;
+          u = 2 * radius * Math.cos(2.4 * restarts);
+          v = -radius * radius;
+        }
+
+        synthetic(n, u, v);
 
-        det = (c[2] * c[2]) - c[1] * c[3];
+        double det = (c[2] * c[2]) - c[1] * c[3];
+        double nu = b[0] * c[3] - b[1] * c[2];
+        double nv = b[1] * c[1] - b[0] * c[2];
 
-        nu = b[0] * c[3] - b[1] * c[2];
-        nv = b[1] * c[1] - b[0] * c[2];
-        
         if (det == 0) {
           du = dv = 1;
         } else {
           du = nu / det;
           dv = nv / det;
         }
-        
+
         u += du;
         v += dv;
 
         error = Math.sqrt(du * du + dv * dv);
+        iterations++;
       }
 
-
-      sq = u * u + 4 * v;
-
-      if (sq < 0) {
-        r1 = u/2;
-        r2 = Math.sqrt(-sq)/2;
-
-        System.out.println(r1 + " + " + r2 + "i");
-        System.out.println(r1 + " - " + r2 + "i");
-      } else {
-        r1 = u/2 + Math.sqrt(sq)/2;
-        r2 = u/2 - Math.sqrt(sq)/2;
-
-        System.out.println(r1);
-        System.out.println(r2);
-      }
-
+      // Quotient for the final u and v
+      synthetic(n, u, v);
+      m = quadratic(u, v, re, im, m);
       n -= 2;
 
       for (i = 0; i < n + 1; i++)
@@ -195,15 +318,17 @@ public class LinBairstow {
     //
     //  Source: http://faculty.cbu.ca/dkeefe/chem302/Chapter%201_WS_part2.pdf
 
-    
-    
-    
     if (n == 3) {
       r = 0;
       error = 1;
       b[n] = a[n];
 
-      while (error > epsilon) {
+      for (int k = 0; !(error <= epsilon); k++) {
+        if (k == maxIterations) {
+          converged = false;
+          break;
+        }
+
         b[2] = a[2] + r * b[3];
         b[1] = a[1] + r * b[2];
         b[0] = a[0] + r * b[1];
@@ -215,50 +340,123 @@ public class LinBairstow {
         else
           dr = -b[0] / d; // b[0] = f(x)
 
-        r -= dr;
+        r += dr;
         error = Math.abs(dr);
+        iterations++;
       }
 
-      System.out.println(r);
+      b[2] = a[2] + r * b[3];
+      b[1] = a[1] + r * b[2];
+
+      re[m] = r;
+      im[m++] = 0;
       n--;
 
       for (i = 0; i < n + 1; i++)
         a[i] = b[i + 1];
     }
 
-
     if (n == 2) {
-      u = -a[1] / a[2];
-      v = -a[0] / a[2];
-      sq = u * u + 4 * v;
-
-      if (sq < 0) {
-        r1 = u/2;
-        r2 = Math.sqrt(-sq)/2;
-
-        System.out.println(r1 + " + " + r2 + "i");
-        System.out.println(r1 + " - " + r2 + "i");
-      } else {
-        r1 = u/2 + Math.sqrt(sq)/2;
-        r2 = u/2 - Math.sqrt(sq)/2;
-
-        System.out.println(r1);
-        System.out.println(r2);
-      }
+      m = quadratic(-a[1] / a[2], -a[0] / a[2], re, im, m);
     } else if (n == 1) {
-      System.out.println(-a[0] / a[1]);
+      re[m] = -a[0] / a[1];
+      im[m++] = 0;
+    }
+
+    return m;
+  }
+
+  // b and c of the division by x^2 - u * x - v, b[n] = c[n] = a[n]
+  private void synthetic(int n, double u, double v)
+  {
+    b[n-1] = a[n-1] + u * b[n];
+    c[n-1] = b[n-1] + u * c[n];
+
+    for (int i = n - 2; i > 0; i--) {
+      b[i] = a[i] + u * b[i+1] + v * b[i+2];
+      c[i] = b[i] + u * c[i+1] + v * c[i+2];
+    }
+
+    b[0] = a[0] + u * b[1] + v * b[2];
+  }
+
+  // Roots of x^2 - u * x - v at re[m], re[m+1], returns m + 2
+  private static int quadratic(double u, double v, double[] re, double[] im,
+                               int m)
+  {
+    double sq = u * u + 4 * v;
+
+    if (sq < 0) {
+      re[m] = re[m+1] = u/2;
+      im[m] = Math.sqrt(-sq)/2;
+      im[m+1] = -im[m];
+    } else {
+      // The larger root without cancellation, the product of both is -v
+      double r1 = u/2 + Math.copySign(Math.sqrt(sq), u)/2;
+      re[m] = r1;
+      re[m+1] = r1 == 0 ? 0 : -v / r1;
+      im[m] = im[m+1] = 0;
     }
 
-    System.out.println("\nRoot finding process has finished.");
+    return m + 2;
+  }
 
+  public void solve()
+  {
+    solve(new PrintWriter(System.out, true));
+  }
+
+  /** Prints the polynomial read by readInput() and its roots. */
+  public void solve(PrintWriter out)
+  {
+    out.println("The polynomial is:");
+    for (int i = n; i >= 0; i--) {
+      if (i == 0)
+        out.print(p[i]);
+      else
+        out.print(p[i] + "*x^" + i + "  ");
+    }
+    out.print("\n\n");
+
+    double[] re = new double[n];
+    double[] im = new double[n];
+    int roots = roots(p, n, re, im);
+
+    for (int k = 0; k < roots; k++) {
+      if (im[k] == 0)
+        out.println(re[k]);
+      else if (im[k] > 0)
+        out.println(re[k] + " + " + im[k] + "i");
+      else
+        out.println(re[k] + " - " + -im[k] + "i");
+    }
+
+    if (check)
+      out.println("\nLargest relative residual: " +
+                  HornerKernel.DEFAULT.maxResidual(p, 0, n, re, im, roots));
+    if (!converged)
+      out.println("\nSome factors didn't converge in " + maxIterations +
+                  " iterations.");
+    out.println("\nRoot finding process has finished.");
+    out.flush();
   }
 
   public static void main(String[] args) throws IOException
   {
     LinBairstow linBairstow = new LinBairstow();
 
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-max") && i + 1 < args.length)
+        linBairstow.setMaxIterations(Integer.parseInt(args[++i]));
+      else if (args[i].equals("-aberth") && i + 1 < args.length)
+        linBairstow.setAberthDegree(Integer.parseInt(args[++i]));
+      else if (args[i].equals("-companion"))
+        linBairstow.setCompanion(true);
+      else if (args[i].equals("-check"))
+        linBairstow.setCheck(true);
+    }
+
     linBairstow.readInput();
     linBairstow.solve();
   }
 }
-
@@ -0,0 +1,230 @@
+/*
+ *  Copyright (C) 2012 Rafael Rendón Pablo <smart.rendon@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* * This class reads a sparse matrix in Matrix Market coordinate format
+ * directly into a SparseMatrix, without a dense copy. */
+
+/*
+  A Matrix Market file looks like:
+
+  %%MatrixMarket matrix coordinate real general
+  % comments
+  3 3 7
+  1 1 5.0
+  2 1 -3.0
+  ...
+
+  the size line is rows, columns and number of entries, then one entry
+  per line: row, column (from 1) and value. "symmetric" matrices store
+  only the lower triangle and "pattern" matrices have no values (all 1).
+  The entries are read in one pass into three arrays of nnz elements and
+  then sorted by row with a counting sort. stream() gives them one by one
+  instead, in the order of the file, without keeping them (see
+  DistributedJacobi).
+
+  The right hand side comes from another file, a Matrix Market array
+  (n x 1) or coordinate vector, or just n numbers. Without it b is
+  (1, 1, ..., 1).
+
+  $ java GaussSeidel -mtx poisson.mtx -rhs poisson_b.mtx -quiet
+*/
+
+import java.io.*;
+import java.util.StringTokenizer;
+
+public class MatrixMarketReader {
+
+  /** Receives the entries of a matrix as stream() reads them. */
+  public interface EntryHandler {
+    /**
+     * n x n matrix with at most this many entries, counting both halves of
+     * a symmetric one. Called before the entries.
+    */
+    void size(int n, long entries) throws IOException;
+
+    /** a_ij, from 0; an entry can come more than once, they add up. */
+    void entry(int i, int j, double a) throws IOException;
+  }
+
+  // Keeps the entries in three arrays, for read()
+  private static class Entries implements EntryHandler {
+    int[] row, column;
+    double[] value;
+    int count;
+
+    public void size(int n, long entries) throws IOException
+    {
+      if (entries > Integer.MAX_VALUE)
+        throw new IOException("Too many entries: " + entries);
+
+      row = new int[(int)entries];
+      column = new int[(int)entries];
+      value = new double[(int)entries];
+    }
+
+    public void entry(int i, int j, double a)
+    {
+      row[count] = i;
+      column[count] = j;
+      value[count++] = a;
+    }
+  }
+
+  public static SparseMatrix read(String matrixPath, String rhsPath)
+    throws IOException
+  {
+    Entries entries = new Entries();
+    int n = stream(matrixPath, entries);
+    int[] row = entries.row;
+
+    // Counting sort of the entries by row
+    int[] rowStart = new int[n + 1];
+    for (int k = 0; k < entries.count; k++)
+      rowStart[row[k] + 1]++;
+    for (int i = 0; i < n; i++)
+      rowStart[i+1] += rowStart[i];
+
+    int[] next = java.util.Arrays.copyOf(rowStart, n);
+    int[] sortedColumn = new int[entries.count];
+    double[] sortedValue = new double[entries.count];
+    for (int k = 0; k < entries.count; k++) {
+      int p = next[row[k]]++;
+      sortedColumn[p] = entries.column[k];
+      sortedValue[p] = entries.value[k];
+    }
+
+    double[] b = rhsPath != null ? readVector(rhsPath, n) : ones(n);
+
+    return new SparseMatrix(n, rowStart, sortedColumn, sortedValue, b);
+  }
+
+  /**
+   * Reads the matrix in one pass and gives every entry to the handler
+   * (both a_ij and a_ji of a symmetric matrix), keeping none of them.
+   * Returns n.
+  */
+  public static int stream(String matrixPath, EntryHandler handler)
+    throws IOException
+  {
+    try (InputStream in = new FileInputStream(matrixPath)) {
+      SystemReader reader = new SystemReader(in);
+      String banner = reader.nextLine();
+
+      if (banner == null || !banner.startsWith("%%MatrixMarket"))
+        throw new IOException(matrixPath + " isn't a Matrix Market file");
+
+      banner = banner.toLowerCase();
+      if (!banner.contains("coordinate"))
+        throw new IOException("Only coordinate (sparse) matrices are supported");
+      if (banner.contains("complex"))
+        throw new IOException("Complex matrices are not supported");
+
+      boolean pattern = banner.contains("pattern");
+      boolean symmetric = banner.contains("symmetric");
+      boolean skew = banner.contains("skew-symmetric");
+
+      StringTokenizer size = new StringTokenizer(skipComments(reader));
+      int n = Integer.parseInt(size.nextToken());
+      int columns = Integer.parseInt(size.nextToken());
+      int entries = Integer.parseInt(size.nextToken());
+
+      if (n != columns)
+        throw new IOException("The matrix isn't square: " + n + " x " + columns);
+
+      handler.size(n, symmetric || skew ? 2L * entries : entries);
+
+      for (int k = 0; k < entries; k++) {
+        int i = reader.nextInt() - 1;
+        int j = reader.nextInt() - 1;
+        double a = pattern ? 1 : reader.nextDouble();
+
+        if (i < 0 || i >= n || j < 0 || j >= n)
+          throw new IOException("Entry out of range: " + (i + 1) + " " + (j + 1));
+
+        handler.entry(i, j, a);
+        if ((symmetric || skew) && i != j) // a_ji from the other triangle
+          handler.entry(j, i, skew ? -a : a);
+      }
+
+      return n;
+    }
+  }
+
+  /**
+   * Reads a vector of n values: a Matrix Market array or coordinate file,
+   * or n numbers separated by whitespace.
+  */
+  public static double[] readVector(String path, int n) throws IOException
+  {
+    try (InputStream in = new BufferedInputStream(new FileInputStream(path))) {
+      in.mark(16);
+      boolean header = in.read() == '%';
+      in.reset();
+
+      SystemReader reader = new SystemReader(in);
+      double[] b = new double[n];
+
+      if (!header) {
+        for (int i = 0; i < n; i++)
+          b[i] = reader.nextDouble();
+        return b;
+      }
+
+      boolean coordinate = reader.nextLine().toLowerCase().contains("coordinate");
+      StringTokenizer size = new StringTokenizer(skipComments(reader));
+      int rows = Integer.parseInt(size.nextToken());
+
+      if (rows != n)
+        throw new IOException("The right hand side has " + rows + " rows, expected " + n);
+
+      if (coordinate) {
+        size.nextToken();
+        int entries = Integer.parseInt(size.nextToken());
+        for (int k = 0; k < entries; k++) {
+          int i = reader.nextInt() - 1;
+          reader.nextInt();
+          b[i] = reader.nextDouble();
+        }
+      } else {
+        for (int i = 0; i < n; i++)
+          b[i] = reader.nextDouble();
+      }
+
+      return b;
+    }
+  }
+
+  // Returns the first line that isn't a comment or empty
+  private static String skipComments(SystemReader reader) throws IOException
+  {
+    String line = reader.nextLine();
+    while (line != null && (line.startsWith("%") || line.trim().isEmpty()))
+      line = reader.nextLine();
+
+    if (line == null)
+      throw new EOFException("Missing size line");
+
+    return line;
+  }
+
+  private static double[] ones(int n)
+  {
+    double[] b = new double[n];
+    java.util.Arrays.fill(b, 1);
+    return b;
+  }
+}
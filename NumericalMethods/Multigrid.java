@@ -0,0 +1,416 @@
+/*
+ *  Copyright (C) 2012 Rafael Rendón Pablo <smart.rendon@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* * This class provides a geometric multigrid solver (V and W cycles) for
+ * Poisson-type equations on structured grids, with Gauss-Seidel as the
+ * smoother. */
+
+/*
+  Gauss-Seidel removes the high frequency (oscillating) part of the error
+  in a few sweeps, but the smooth part decreases very slowly. On a grid
+  with half the points that smooth error oscillates again, so multigrid
+  smooths, moves the residual to the coarser grid (restriction, full
+  weighting), solves the error equation there recursively, interpolates
+  the correction back (prolongation, linear) and smooths again. The number
+  of cycles doesn't depend on the size of the grid, and each cycle costs
+  a few sweeps of the finest grid.
+
+  The input is a description of the grid instead of a matrix:
+
+  2          dimensions, 1 (3-point stencil), 2 (5-point) or 3 (7-point)
+  63         interior points per side, 2^k - 1
+  4 -1       coefficient of the center point and of each neighbor
+  1          right hand side, the same value at every point
+
+  The boundary values are zero. The coarse grids use the same operator
+  with spacing 2h: the neighbor part scales by 1/4 and what the center
+  has besides -2 * dims * neighbor (a reaction term) stays.
+
+  $ java Multigrid < grid.txt
+  $ java Multigrid -w -pre 2 -post 2 -tol 1e-12 < grid.txt
+*/
+
+import java.io.*;
+
+public class Multigrid {
+  public static final int MAX_CYCLES = 100;
+  public static final int MIN_CYCLES = 3; // Before testing for stagnation
+  public static final int COARSEST = 3; // Points per side solved directly
+
+  private int dims;
+  private int levels;
+  private int[] size;             // Points per side of each level
+  private SparseMatrix[] A;       // Operator of each level, 0 is the finest
+  private double[][] U, F, R;     // Solution, right hand side, residual
+  private double[][] coarse;      // Dense operator of the coarsest level
+  private int pre = 1, post = 1;  // Smoothing sweeps
+  private int gamma = 1;          // 1 V-cycle, 2 W-cycle
+
+  /**
+   * n interior points per side (2^k - 1), dims 1, 2 or 3, and the stencil of
+   * the finest grid.
+  */
+  public Multigrid(int dims, int n, double center, double neighbor)
+  {
+    if (dims < 1 || dims > 3)
+      throw new IllegalArgumentException("Only 1, 2 or 3 dimensions");
+    if (n < 1 || ((n + 1) & n) != 0)
+      throw new IllegalArgumentException("The points per side must be 2^k - 1: " + n);
+
+    this.dims = dims;
+    levels = 1;
+    for (int m = n; m > COARSEST; m = (m - 1) / 2)
+      levels++;
+
+    size = new int[levels];
+    A = new SparseMatrix[levels];
+    U = new double[levels][];
+    F = new double[levels][];
+    R = new double[levels][];
+
+    double reaction = center + 2 * dims * neighbor;
+    for (int l = 0, m = n; l < levels; l++, m = (m - 1) / 2) {
+      size[l] = m;
+      A[l] = stencil(dims, m, center, neighbor);
+      int points = A[l].rows();
+      U[l] = new double[points];
+      F[l] = new double[points];
+      R[l] = new double[points];
+
+      neighbor /= 4;
+      center = reaction - 2 * dims * neighbor;
+    }
+
+    coarse = dense(A[levels - 1]);
+  }
+
+  /** Smoothing sweeps before and after the coarse grid correction. */
+  public void setSmoothing(int pre, int post)
+  {
+    this.pre = pre;
+    this.post = post;
+  }
+
+  /** 1 for V-cycles, 2 for W-cycles. */
+  public void setCycle(int gamma) { this.gamma = gamma; }
+
+  /** Number of unknowns of the finest grid. */
+  public int points() { return U[0].length; }
+
+  /**
+   * The matrix of the stencil on an n^dims grid, row-major order, the
+   * neighbors outside the grid are boundary values (zero).
+  */
+  public static SparseMatrix stencil(int dims, int n, double center,
+                                     double neighbor)
+  {
+    int points = 1;
+    for (int d = 0; d < dims; d++)
+      points *= n;
+
+    int[] rowStart = new int[points + 1];
+    int[] column = new int[points * (2 * dims + 1)];
+    double[] value = new double[column.length];
+    int p = 0;
+
+    for (int i = 0; i < points; i++) {
+      rowStart[i] = p;
+      column[p] = i;
+      value[p++] = center;
+
+      for (int d = 0, stride = 1; d < dims; d++, stride *= n) {
+        int coordinate = (i / stride) % n;
+        if (coordinate > 0) {
+          column[p] = i - stride;
+          value[p++] = neighbor;
+        }
+        if (coordinate < n - 1) {
+          column[p] = i + stride;
+          value[p++] = neighbor;
+        }
+      }
+    }
+    rowStart[points] = p;
+
+    return new SparseMatrix(points, rowStart, column, value, new double[points]);
+  }
+
+  /**
+   * Solves A * u = f on the finest grid, printing the residual of every
+   * cycle. Returns the solution, in row-major order.
+  */
+  public SolveResult solve(double[] f, double tolerance, PrintWriter writer)
+  {
+    long start = System.nanoTime();
+    double[] u = U[0];
+    double normF = max(f);
+    double residual = 1, last;
+    int cycles = 0;
+
+    System.arraycopy(f, 0, F[0], 0, f.length);
+    java.util.Arrays.fill(u, 0);
+    if (normF == 0)
+      normF = 1;
+
+    while (cycles < MAX_CYCLES) {
+      cycle(0);
+      cycles++;
+
+      last = residual;
+      residual = residual(0) / normF;
+      if (writer != null)
+        writer.println("cycle " + cycles + ": residual = " + residual +
+                       ", factor = " + residual / last);
+
+      // Below the tolerance, or stuck at the rounding error of the grid.
+      // The first cycles can raise the residual while the smooth error
+      // is being removed (1-D grids), so they don't count as stuck.
+      if (residual <= tolerance || cycles >= MIN_CYCLES && residual >= last)
+        break;
+    }
+
+    if (writer != null && residual > tolerance)
+      writer.println("The residual didn't reach the tolerance " + tolerance);
+
+    return new SolveResult(u.clone(), cycles, residual, System.nanoTime() - start);
+  }
+
+  private void cycle(int l)
+  {
+    if (l == levels - 1) {
+      solveDirect(coarse, F[l], U[l]);
+      return;
+    }
+
+    for (int s = 0; s < pre; s++)
+      A[l].gaussSeidelSweep(U[l], F[l], 1, false);
+
+    residual(l);
+    restrict(R[l], F[l+1], size[l]);
+
+    java.util.Arrays.fill(U[l+1], 0);
+    for (int g = 0; g < gamma; g++)
+      cycle(l + 1);
+
+    prolongAdd(U[l+1], U[l], size[l+1]);
+
+    // Backward sweeps, so the cycle is symmetric
+    for (int s = 0; s < post; s++)
+      A[l].gaussSeidelSweep(U[l], F[l], 1, true);
+  }
+
+  // R[l] = F[l] - A[l] * U[l], returns its maximum norm
+  private double residual(int l)
+  {
+    double[] r = R[l];
+    A[l].multiply(U[l], r);
+    for (int i = 0; i < r.length; i++)
+      r[i] = F[l][i] - r[i];
+
+    return max(r);
+  }
+
+  /**
+   * Full weighting: the coarse point i is the fine point 2i + 1 and gets
+   * 1/4, 1/2, 1/4 of the fine points 2i, 2i + 1, 2i + 2 along every
+   * dimension (the product of the 1-D weights).
+  */
+  private void restrict(double[] fine, double[] coarse, int n)
+  {
+    int m = (n - 1) / 2;
+    double[] v = fine;
+    int[] shape = shape(n);
+
+    for (int d = 0; d < dims; d++) {
+      int inner = 1, outer = 1;
+      for (int e = 0; e < d; e++)
+        inner *= shape[e];
+      for (int e = d + 1; e < dims; e++)
+        outer *= shape[e];
+
+      double[] w = d == dims - 1 ? coarse : new double[outer * m * inner];
+      for (int o = 0; o < outer; o++) {
+        for (int i = 0; i < m; i++) {
+          int from = (o * n + 2 * i + 1) * inner;
+          int to = (o * m + i) * inner;
+          for (int t = 0; t < inner; t++)
+            w[to + t] = 0.25 * v[from + t - inner] + 0.5 * v[from + t] +
+                        0.25 * v[from + t + inner];
+        }
+      }
+
+      shape[d] = m;
+      v = w;
+    }
+  }
+
+  /**
+   * Linear interpolation, fine += P * coarse. The fine point 2i + 1 takes
+   * the coarse point i and the point 2i the average of i - 1 and i (zero
+   * outside the grid), along every dimension.
+  */
+  private void prolongAdd(double[] coarse, double[] fine, int m)
+  {
+    int n = 2 * m + 1;
+    double[] v = coarse;
+    int[] shape = shape(m);
+
+    for (int d = 0; d < dims; d++) {
+      int inner = 1, outer = 1;
+      for (int e = 0; e < d; e++)
+        inner *= shape[e];
+      for (int e = d + 1; e < dims; e++)
+        outer *= shape[e];
+
+      double[] w = new double[outer * n * inner];
+      for (int o = 0; o < outer; o++) {
+        for (int i = 0; i < n; i++) {
+          int to = (o * n + i) * inner;
+          int c = (i - 1) / 2; // coarse point to the left, or i / 2 if odd
+          for (int t = 0; t < inner; t++) {
+            if (i % 2 == 1) {
+              w[to + t] = v[(o * m + i / 2) * inner + t];
+            } else {
+              double left = i > 0 ? v[(o * m + c) * inner + t] : 0;
+              double right = i < n - 1 ? v[(o * m + i / 2) * inner + t] : 0;
+              w[to + t] = 0.5 * (left + right);
+            }
+          }
+        }
+      }
+
+      shape[d] = n;
+      v = w;
+    }
+
+    for (int i = 0; i < fine.length; i++)
+      fine[i] += v[i];
+  }
+
+  private int[] shape(int n)
+  {
+    int[] shape = new int[dims];
+    java.util.Arrays.fill(shape, n);
+    return shape;
+  }
+
+  private static double max(double[] x)
+  {
+    double max = 0;
+    for (int i = 0; i < x.length; i++)
+      max = Math.max(max, Math.abs(x[i]));
+    return max;
+  }
+
+  // Dense copy of a small matrix for the direct solve
+  private static double[][] dense(SparseMatrix S)
+  {
+    int n = S.rows();
+    double[][] D = new double[n][n];
+    double[] e = new double[n];
+    double[] column = new double[n];
+
+    for (int j = 0; j < n; j++) {
+      e[j] = 1;
+      S.multiply(e, column);
+      for (int i = 0; i < n; i++)
+        D[i][j] = column[i];
+      e[j] = 0;
+    }
+
+    return D;
+  }
+
+  /**
+   * Gaussian elimination with partial pivoting, x = D^-1 * b. D isn't
+   * modified.
+  */
+  private static void solveDirect(double[][] D, double[] b, double[] x)
+  {
+    int n = b.length;
+    double[][] T = new double[n][];
+    for (int i = 0; i < n; i++) {
+      T[i] = java.util.Arrays.copyOf(D[i], n + 1);
+      T[i][n] = b[i];
+    }
+
+    for (int k = 0; k < n; k++) {
+      int pivot = k;
+      for (int i = k + 1; i < n; i++)
+        if (Math.abs(T[i][k]) > Math.abs(T[pivot][k]))
+          pivot = i;
+
+      double[] row = T[pivot];
+      T[pivot] = T[k];
+      T[k] = row;
+
+      for (int i = k + 1; i < n; i++) {
+        double factor = T[i][k] / T[k][k];
+        for (int j = k; j <= n; j++)
+          T[i][j] -= factor * T[k][j];
+      }
+    }
+
+    for (int i = n - 1; i >= 0; i--) {
+      double sum = T[i][n];
+      for (int j = i + 1; j < n; j++)
+        sum -= T[i][j] * x[j];
+      x[i] = sum / T[i][i];
+    }
+  }
+
+  public static void main(String[] args) throws IOException
+  {
+    PrintWriter writer = new PrintWriter(System.out, true);
+    double tolerance = 1e-10;
+    boolean print = false;
+    Multigrid multigrid;
+
+    SystemReader reader = new SystemReader(System.in);
+    int dims = reader.nextInt();
+    int n = reader.nextInt();
+    double center = reader.nextDouble();
+    double neighbor = reader.nextDouble();
+    double value = reader.nextDouble();
+
+    multigrid = new Multigrid(dims, n, center, neighbor);
+
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-w"))
+        multigrid.setCycle(2);
+      else if (args[i].equals("-pre") && i + 1 < args.length)
+        multigrid.pre = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-post") && i + 1 < args.length)
+        multigrid.post = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-tol") && i + 1 < args.length)
+        tolerance = Double.parseDouble(args[++i]);
+      else if (args[i].equals("-print"))
+        print = true;
+    }
+
+    double[] f = new double[multigrid.points()];
+    java.util.Arrays.fill(f, value);
+
+    writer.println(multigrid.points() + " unknowns, " + multigrid.levels + " levels");
+    SolveResult result = multigrid.solve(f, tolerance, writer);
+
+    if (print)
+      IterationListener.PRINT.iteration(result.getIterations() - 1, result.getSolution(), 0);
+    writer.println("cycles = " + result.getIterations() + ", residual = " +
+                   result.getResidual() + ", time = " + result.getTime() + " s");
+  }
+}
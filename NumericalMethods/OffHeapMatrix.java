@@ -0,0 +1,74 @@
+/*
+ *  Copyright (C) 2012 Rafael Rendón Pablo <smart.rendon@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* * Augmented matrix stored outside the Java heap in direct buffers, so
+ * big systems are neither limited by the heap size nor scanned by the
+ * garbage collector. A direct buffer holds at most 2 GB, the rows are
+ * split among as many buffers as needed (whole rows per buffer). */
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+
+public class OffHeapMatrix implements AugmentedMatrix {
+  private int n;
+  private int stride;       // n + 1
+  private int rowsPerChunk;
+  private DoubleBuffer[] chunks;
+
+  public OffHeapMatrix(int n)
+  {
+    this.n = n;
+    this.stride = n + 1;
+    this.rowsPerChunk = Math.max(1, (Integer.MAX_VALUE / 8) / stride);
+
+    int count = (n + rowsPerChunk - 1) / rowsPerChunk;
+    chunks = new DoubleBuffer[count];
+    for (int c = 0; c < count; c++) {
+      int rows = Math.min(rowsPerChunk, n - c * rowsPerChunk);
+      chunks[c] = ByteBuffer.allocateDirect(rows * stride * 8)
+                            .order(ByteOrder.nativeOrder())
+                            .asDoubleBuffer();
+    }
+  }
+
+  public int rows() { return n; }
+
+  public double get(int i, int j)
+  {
+    return chunks[i / rowsPerChunk].get((i % rowsPerChunk) * stride + j);
+  }
+
+  public void set(int i, int j, double value)
+  {
+    chunks[i / rowsPerChunk].put((i % rowsPerChunk) * stride + j, value);
+  }
+
+  public double offDiagonalSum(int i, double[] X)
+  {
+    DoubleBuffer chunk = chunks[i / rowsPerChunk];
+    int row = (i % rowsPerChunk) * stride;
+    double sum = chunk.get(row + n); // b_i
+
+    for (int j = 0; j < i; j++)
+      sum -= chunk.get(row + j) * X[j];
+    for (int j = i + 1; j < n; j++)
+      sum -= chunk.get(row + j) * X[j];
+
+    return sum;
+  }
+}
@@ -0,0 +1,221 @@
+/*
+ *  Copyright (C) 2012 Rafael Rendón Pablo <smart.rendon@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* * Finds the roots of many polynomials with LinBairstow, split among a
+ * pool of threads, and writes them in the order of the input. */
+
+/*
+  How to use:
+  The input is a stream of polynomials, each one its degree n followed by
+  a[0] a[1] ... a[n], separated by any blanks (one per line is usual):
+
+  2 -1 0 1
+  4 1 3 1 2 4
+
+  $ java RootBatch polynomials.txt > roots.txt
+  $ java RootBatch -threads 8 -o roots.txt < polynomials.txt
+
+  Every polynomial gives one line: the number of roots and then the real
+  and imaginary part of each one,
+
+  2 1.0 0.0 -1.0 0.0
+  4 0.356... 0.821... 0.356... -0.821... -0.842... 0.0 -0.370... 0.0
+
+  The polynomials are read in chunks of CHUNK, every chunk is solved and
+  formatted by one thread with its own LinBairstow and arrays, and the
+  chunks are written in order as they finish. At most 4 chunks per thread
+  are in memory. The number of polynomials per second is printed to
+  standard error at the end, with how many reached maxIterations.
+*/
+
+import java.io.*;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class RootBatch {
+  public static final int CHUNK = 1024;
+
+  // Scratch of every worker thread, grown for the biggest degree seen
+  private static final ThreadLocal<Scratch> SCRATCH =
+      ThreadLocal.withInitial(Scratch::new);
+
+  private int threads = Runtime.getRuntime().availableProcessors();
+  private int maxIterations = LinBairstow.MAX_ITERATIONS;
+  private long count;
+  private long failed;
+
+  private static class Scratch {
+    LinBairstow solver = new LinBairstow();
+    double[] re = new double[20];
+    double[] im = new double[20];
+  }
+
+  /** Polynomials of a chunk, their coefficients one after another. */
+  private static class Chunk implements Callable<Chunk> {
+    int count;
+    int[] degree = new int[CHUNK];
+    int[] start = new int[CHUNK + 1];
+    double[] coefficients = new double[8 * CHUNK];
+    int maxIterations;
+    StringBuilder out = new StringBuilder();
+    int failed; // Polynomials that didn't converge
+
+    public Chunk call()
+    {
+      Scratch s = SCRATCH.get();
+      s.solver.setMaxIterations(maxIterations);
+
+      for (int k = 0; k < count; k++) {
+        int n = degree[k];
+        if (s.re.length < n) {
+          s.re = new double[n];
+          s.im = new double[n];
+        }
+
+        int roots = s.solver.roots(coefficients, start[k], n, s.re, s.im);
+        if (!s.solver.hasConverged())
+          failed++;
+
+        out.append(roots);
+        for (int r = 0; r < roots; r++)
+          out.append(' ').append(s.re[r]).append(' ').append(s.im[r]);
+        out.append('\n');
+      }
+
+      return this;
+    }
+  }
+
+  public void setThreads(int threads) { this.threads = Math.max(1, threads); }
+
+  public void setMaxIterations(int maxIterations)
+  {
+    this.maxIterations = maxIterations;
+  }
+
+  /** Polynomials solved by the last run. */
+  public long getCount() { return count; }
+
+  /** Polynomials of the last run that reached maxIterations. */
+  public long getFailed() { return failed; }
+
+  /**
+   * Reads every polynomial of in and writes their roots to out, in the
+   * same order.
+  */
+  public void run(InputStream in, Writer out) throws IOException
+  {
+    SystemReader reader = new SystemReader(in);
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    ArrayDeque<Future<Chunk>> pending = new ArrayDeque<>();
+    count = 0;
+    failed = 0;
+
+    try {
+      while (reader.hasNext()) {
+        Chunk chunk = read(reader);
+        count += chunk.count;
+        pending.add(pool.submit(chunk));
+
+        if (pending.size() >= 4 * threads)
+          write(pending.poll(), out);
+      }
+
+      while (!pending.isEmpty())
+        write(pending.poll(), out);
+    } finally {
+      pool.shutdownNow();
+    }
+
+    out.flush();
+  }
+
+  private Chunk read(SystemReader reader) throws IOException
+  {
+    Chunk chunk = new Chunk();
+    chunk.maxIterations = maxIterations;
+    int used = 0;
+
+    while (chunk.count < CHUNK && reader.hasNext()) {
+      int n = reader.nextInt();
+      if (n < 0)
+        throw new IOException("Negative degree: " + n);
+
+      if (used + n + 1 > chunk.coefficients.length)
+        chunk.coefficients = java.util.Arrays.copyOf(chunk.coefficients,
+            Math.max(2 * chunk.coefficients.length, used + n + 1));
+
+      for (int i = 0; i <= n; i++)
+        chunk.coefficients[used + i] = reader.nextDouble();
+
+      chunk.degree[chunk.count] = n;
+      chunk.start[chunk.count] = used;
+      chunk.count++;
+      used += n + 1;
+    }
+
+    return chunk;
+  }
+
+  private void write(Future<Chunk> future, Writer out) throws IOException
+  {
+    try {
+      Chunk chunk = future.get();
+      failed += chunk.failed;
+      out.append(chunk.out);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+  }
+
+  public static void main(String[] args) throws IOException
+  {
+    RootBatch batch = new RootBatch();
+    String input = null;
+    String output = null;
+
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-threads") && i + 1 < args.length)
+        batch.setThreads(Integer.parseInt(args[++i]));
+      else if (args[i].equals("-max") && i + 1 < args.length)
+        batch.setMaxIterations(Integer.parseInt(args[++i]));
+      else if (args[i].equals("-o") && i + 1 < args.length)
+        output = args[++i];
+      else
+        input = args[i];
+    }
+
+    long start = System.nanoTime();
+    try (InputStream in = input != null ? new FileInputStream(input) : System.in;
+         Writer out = new BufferedWriter(new OutputStreamWriter(
+             output != null ? new FileOutputStream(output) : System.out), 1 << 16)) {
+      batch.run(in, out);
+    }
+
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.err.println(batch.getCount() + " polynomials in " + seconds + " s, " +
+                       (long)(batch.getCount() / seconds) + " polynomials/s, " +
+                       batch.getFailed() + " didn't converge");
+  }
+}
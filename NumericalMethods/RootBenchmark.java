@@ -0,0 +1,101 @@
+/*
+ *  Copyright (C) 2012 Rafael Rendón Pablo <smart.rendon@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* * Compares the root finders of LinBairstow on random polynomials of
+ * several degrees: time per polynomial and accuracy of the roots. */
+
+/*
+  How to use:
+  $ java RootBenchmark [count] [degrees...]
+
+  Defaults to 200 polynomials of each of the degrees 4, 8, 12, 20, 50, 100
+  and 200, with coefficients uniform in [-1, 1]. The methods are Bairstow
+  alone, Aberth-Ehrlich alone, the default of solve() (Bairstow below
+  LinBairstow.ABERTH_DEGREE, Aberth from there) and the companion matrix
+  eigenvalues. The error of a root z is the relative residual
+  |f(z)| / (|a_0| + |a_1| |z| + ... + |a_n| |z|^n), about the machine
+  epsilon for a root that is exact for slightly perturbed coefficients
+  (HornerKernel.maxResidual()). The worst one over all roots is shown,
+  and the polynomials where hasConverged() was false.
+*/
+
+import java.util.Random;
+
+public class RootBenchmark {
+  public static final String[] METHODS = {"bairstow", "aberth", "solve()",
+                                          "companion"};
+
+  private static LinBairstow solver(int method, int n)
+  {
+    LinBairstow solver = new LinBairstow(n);
+    if (method == 0)
+      solver.setAberthDegree(Integer.MAX_VALUE);
+    else if (method == 1)
+      solver.setAberthDegree(0);
+    else if (method == 3)
+      solver.setCompanion(true);
+    return solver;
+  }
+
+  public static void main(String[] args)
+  {
+    int count = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+    int[] degrees = {4, 8, 12, 20, 50, 100, 200};
+    if (args.length > 1) {
+      degrees = new int[args.length - 1];
+      for (int d = 1; d < args.length; d++)
+        degrees[d - 1] = Integer.parseInt(args[d]);
+    }
+
+    System.out.printf("%6s  %-10s %12s %12s %6s%n", "degree", "method",
+                      "us/poly", "worst error", "failed");
+    for (int n : degrees) {
+      Random random = new Random(n);
+      double[][] P = new double[count][n + 1];
+      for (double[] poly : P)
+        for (int i = 0; i <= n; i++)
+          poly[i] = 2 * random.nextDouble() - 1;
+
+      double[] re = new double[n], im = new double[n];
+      for (int method = 0; method < METHODS.length; method++) {
+        LinBairstow solver = solver(method, n);
+        for (int w = 0; w < 3; w++) // Warm up
+          for (double[] poly : P)
+            solver.roots(poly, n, re, im);
+
+        long start = System.nanoTime();
+        for (double[] poly : P)
+          solver.roots(poly, n, re, im);
+        double micros = (System.nanoTime() - start) / 1e3 / count;
+
+        double worst = 0;
+        int failed = 0;
+        for (double[] poly : P) {
+          int m = solver.roots(poly, n, re, im);
+          if (!solver.hasConverged())
+            failed++;
+          double error = HornerKernel.DEFAULT.maxResidual(poly, 0, n, re, im, m);
+          if (!(error <= worst)) // NaN is the worst
+            worst = error;
+        }
+
+        System.out.printf("%6d  %-10s %12.2f %12.2e %6d%n", n, METHODS[method],
+                          micros, worst, failed);
+      }
+    }
+  }
+}
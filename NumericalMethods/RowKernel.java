@@ -0,0 +1,93 @@
+/*
+ *  Copyright (C) 2012 Rafael Rendón Pablo <smart.rendon@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* * Dot product of a matrix row with a vector, the inner loop of the dense
+ * sweeps. The solvers compute the whole row product and then take out the
+ * diagonal term, so the loop has no j != i test and can be vectorized. */
+
+/*
+  DEFAULT uses the Vector API (VectorRowKernel) when the incubator module
+  is present, and the scalar loop otherwise:
+
+  $ javac --add-modules jdk.incubator.vector *.java
+  $ java --add-modules jdk.incubator.vector GaussSeidel -flat < equations.txt
+
+  Without the module leave VectorRowKernel.java out when compiling, or run
+  with -Drowkernel=scalar to force the scalar loop.
+*/
+
+public interface RowKernel {
+
+  /** a[offset] * x[0] + a[offset+1] * x[1] + ... + a[offset+n-1] * x[n-1] */
+  double dot(double[] a, int offset, double[] x, int n);
+
+  /**
+   * Adds to sums[0..3] the products of four rows with x[from..to-1], row r
+   * has a_rj at a[rk + j]. Every x[j] is loaded once for the four rows.
+  */
+  default void dot4(double[] a, int r0, int r1, int r2, int r3, double[] x,
+                    int from, int to, double[] sums)
+  {
+    double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+    for (int j = from; j < to; j++) {
+      double v = x[j];
+      s0 += a[r0 + j] * v;
+      s1 += a[r1 + j] * v;
+      s2 += a[r2 + j] * v;
+      s3 += a[r3 + j] * v;
+    }
+
+    sums[0] += s0;
+    sums[1] += s1;
+    sums[2] += s2;
+    sums[3] += s3;
+  }
+
+  /** Four independent sums, so consecutive multiply-adds don't wait. */
+  RowKernel SCALAR = new RowKernel() {
+    public double dot(double[] a, int offset, double[] x, int n)
+    {
+      double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+      int j = 0;
+      for (; j + 3 < n; j += 4) {
+        s0 += a[offset + j] * x[j];
+        s1 += a[offset + j + 1] * x[j + 1];
+        s2 += a[offset + j + 2] * x[j + 2];
+        s3 += a[offset + j + 3] * x[j + 3];
+      }
+      for (; j < n; j++)
+        s0 += a[offset + j] * x[j];
+
+      return (s0 + s1) + (s2 + s3);
+    }
+  };
+
+  RowKernel DEFAULT = load();
+
+  static RowKernel load()
+  {
+    if ("scalar".equals(System.getProperty("rowkernel")))
+      return SCALAR;
+
+    try {
+      return (RowKernel)Class.forName("VectorRowKernel")
+                             .getDeclaredConstructor().newInstance();
+    } catch (Exception | LinkageError e) { // No class or no module
+      return SCALAR;
+    }
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ *  Copyright (C) 2012 Rafael Rendón Pablo <smart.rendon@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* * Result of an iterative solve: the solution and how much it cost. */
+
+public class SolveResult {
+  private double[] solution;
+  private int iterations;
+  private double residual;
+  private long nanos;
+
+  public SolveResult(double[] solution, int iterations, double residual,
+                     long nanos)
+  {
+    this.solution = solution;
+    this.iterations = iterations;
+    this.residual = residual;
+    this.nanos = nanos;
+  }
+
+  public double[] getSolution() { return solution; }
+
+  public int getIterations() { return iterations; }
+
+  /** Relative residual ||b - A * x|| / ||b||, maximum norm. */
+  public double getResidual() { return residual; }
+
+  /** Wall time of the solve, in seconds. */
+  public double getTime() { return nanos / 1e9; }
+
+  public String toString()
+  {
+    return "iterations = " + iterations + ", residual = " + residual +
+           ", time = " + getTime() + " s";
+  }
+}
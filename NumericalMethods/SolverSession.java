@@ -0,0 +1,288 @@
+/*
+ *  Copyright (C) 2012 Rafael Rendón Pablo <smart.rendon@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* * A SolverSession keeps a system of linear equations, rearranged to be
+ * diagonally dominant, and its last solution, to solve it again after
+ * small changes. The next solve starts from the last solution, so when
+ * the system changes a little it only needs a few sweeps. */
+
+/*
+  How to use:
+
+  $ java SolverSession -updates changes.txt < equations.txt
+
+  changes.txt has one change per line, in the original numbering of the
+  equations and variables (from 1):
+
+  a 2 3 -1.5     a_23 = -1.5
+  b 1 4.0        b_1 = 4.0
+  solve
+  a 1 2 1        a_12 = 1
+  a 1 2 2        a_12 = 2, the last value of an entry counts
+  solve
+
+  The rows are rearranged again only when a changed row stops being
+  diagonally dominant.
+*/
+
+import java.io.*;
+import java.util.StringTokenizer;
+
+public class SolverSession {
+  private AugmentedMatrix M;
+  private SparseMatrix S;
+  private boolean jacobi;
+  private int n;
+  private int[] order;      // Row r holds equation order[r]
+  private int[] position;   // Equation i is in row position[i]
+  private boolean[] changed;
+  private boolean anyChanged;
+  private double[] X;
+  private boolean dominant;
+  private boolean restart;  // The last solution is no good as a start
+  private double tolerance = 1e-12;
+  private int maxIterations = 10000;
+  private double omega = 1;
+
+  // Entries that aren't stored in S yet
+  private int[] newRow = new int[8];
+  private int[] newColumn = new int[8];
+  private double[] newValue = new double[8];
+  private int newCount;
+
+  public SolverSession(AugmentedMatrix matrix, boolean jacobi)
+  {
+    M = matrix;
+    this.jacobi = jacobi;
+    init(matrix.rows());
+  }
+
+  public SolverSession(SparseMatrix matrix, boolean jacobi)
+  {
+    S = matrix;
+    this.jacobi = jacobi;
+    init(matrix.rows());
+  }
+
+  private void init(int n)
+  {
+    this.n = n;
+    order = new int[n];
+    position = new int[n];
+    changed = new boolean[n];
+    X = new double[n];
+    for (int i = 0; i < n; i++)
+      order[i] = position[i] = i;
+
+    dominant = reorder();
+  }
+
+  public void setTolerance(double tolerance) { this.tolerance = tolerance; }
+
+  public void setMaxIterations(int maxIterations) { this.maxIterations = maxIterations; }
+
+  /** SOR factor, only for Gauss-Seidel. */
+  public void setRelaxation(double omega) { this.omega = omega; }
+
+  /** Last solution, indexed by variable. */
+  public double[] getSolution() { return X; }
+
+  /**
+   * False when the rows couldn't be rearranged to make the matrix
+   * dominant after the last change, the solves may not converge.
+  */
+  public boolean isDominant() { return dominant; }
+
+  /** a_ij = value, i is the equation and j the variable (from 0). */
+  public void setCoefficient(int equation, int variable, double value)
+  {
+    int r = position[equation];
+    markChanged(r);
+
+    if (M != null) {
+      M.set(r, variable, value);
+    } else if (!S.set(r, variable, value)) {
+      for (int k = 0; k < newCount; k++) {
+        if (newRow[k] == r && newColumn[k] == variable) {
+          newValue[k] = value; // Set again before solve(), the last wins
+          return;
+        }
+      }
+
+      if (newCount == newRow.length) {
+        newRow = java.util.Arrays.copyOf(newRow, 2 * newCount);
+        newColumn = java.util.Arrays.copyOf(newColumn, 2 * newCount);
+        newValue = java.util.Arrays.copyOf(newValue, 2 * newCount);
+      }
+      newRow[newCount] = r;
+      newColumn[newCount] = variable;
+      newValue[newCount++] = value;
+    }
+  }
+
+  /** b_i = value for equation i (from 0). */
+  public void setRightHandSide(int equation, double value)
+  {
+    if (M != null)
+      M.set(position[equation], n, value);
+    else
+      S.set(position[equation], n, value);
+  }
+
+  private void markChanged(int r)
+  {
+    changed[r] = true;
+    anyChanged = true;
+  }
+
+  /**
+   * Solves the system starting from the last solution, or from zero if
+   * the last solve didn't converge. The rows are rearranged first if a
+   * changed row isn't dominant anymore, or the matrix wasn't.
+  */
+  public SolveResult solve()
+  {
+    if (newCount > 0) {
+      S = S.withEntries(newRow, newColumn, newValue, newCount);
+      newCount = 0;
+    }
+
+    if (anyChanged) {
+      boolean keep = dominant;
+      for (int r = 0; r < n && keep; r++)
+        if (changed[r])
+          keep = M != null ? AugmentedMatrix.isRowDominant(M, r)
+                           : S.isRowDominant(r);
+
+      if (!keep)
+        dominant = reorder();
+
+      java.util.Arrays.fill(changed, false);
+      anyChanged = false;
+    }
+
+    SolveResult result;
+    if (jacobi) {
+      Jacobi solver = M != null ? new Jacobi(M) : new Jacobi(S);
+      solver.setTolerance(tolerance, Jacobi.STEP);
+      solver.setMaxIterations(maxIterations);
+      solver.setInitialGuess(restart ? null : X);
+      result = solver.solve(null, 1);
+    } else {
+      GaussSeidel solver = M != null ? new GaussSeidel(M) : new GaussSeidel(S);
+      solver.setRelaxation(omega);
+      solver.setTolerance(tolerance, GaussSeidel.STEP);
+      solver.setMaxIterations(maxIterations);
+      solver.setInitialGuess(restart ? null : X);
+      result = solver.solve(null, 1);
+    }
+
+    X = result.getSolution();
+    restart = result.getIterations() >= maxIterations;
+    for (int i = 0; i < n && !restart; i++)
+      restart = !Double.isFinite(X[i]);
+
+    return result;
+  }
+
+  /**
+   * Rearranges the rows to make the matrix dominant, if possible. The
+   * columns don't move, so the last solution is still a good start.
+  */
+  private boolean reorder()
+  {
+    int[] R = M != null ? AugmentedMatrix.dominantRows(M) : S.dominantRows();
+    if (R == null)
+      return false;
+
+    if (M != null)
+      M.permuteRows(R);
+    else
+      S = S.permuteRows(R);
+
+    int[] next = new int[n];
+    for (int r = 0; r < n; r++) {
+      next[r] = order[R[r]];
+      position[next[r]] = r;
+    }
+    order = next;
+
+    return true;
+  }
+
+  public static void main(String[] args) throws IOException
+  {
+    PrintWriter writer = new PrintWriter(System.out, true);
+    String updates = null;
+    boolean sparse = false;
+    boolean jacobi = false;
+
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-updates") && i + 1 < args.length)
+        updates = args[++i];
+      else if (args[i].equals("-sparse"))
+        sparse = true;
+      else if (args[i].equals("-jacobi"))
+        jacobi = true;
+    }
+
+    SystemReader input = new SystemReader(System.in);
+    SolverSession session = sparse ? new SolverSession(input.readSparse(), jacobi)
+                                   : new SolverSession(input.readText("flat"), jacobi);
+
+    if (!session.isDominant()) {
+      writer.println("The system isn't diagonally dominant: " +
+                     "The method cannot guarantee convergence.");
+    }
+
+    SolveResult result = session.solve();
+    IterationListener.PRINT.iteration(0, result.getSolution(), 0);
+    writer.println(result);
+
+    if (updates == null)
+      return;
+
+    BufferedReader reader = new BufferedReader(new FileReader(updates));
+    int solves = 1;
+    String line;
+
+    while ((line = reader.readLine()) != null) {
+      StringTokenizer strtk = new StringTokenizer(line);
+      if (!strtk.hasMoreTokens())
+        continue;
+
+      String command = strtk.nextToken();
+      if (command.equals("a")) {
+        int i = Integer.parseInt(strtk.nextToken()) - 1;
+        int j = Integer.parseInt(strtk.nextToken()) - 1;
+        session.setCoefficient(i, j, Double.parseDouble(strtk.nextToken()));
+      } else if (command.equals("b")) {
+        int i = Integer.parseInt(strtk.nextToken()) - 1;
+        session.setRightHandSide(i, Double.parseDouble(strtk.nextToken()));
+      } else if (command.equals("solve")) {
+        result = session.solve();
+        if (!session.isDominant()) {
+          writer.println("The system isn't diagonally dominant after the " +
+                         "changes: The method cannot guarantee convergence.");
+        }
+        IterationListener.PRINT.iteration(solves++, result.getSolution(), 0);
+        writer.println(result);
+      }
+    }
+    reader.close();
+  }
+}
@@ -0,0 +1,562 @@
+/*
+ *  Copyright (C) 2012 Rafael Rendón Pablo <smart.rendon@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* * This class stores a system of linear equations in compressed sparse row
+ * (CSR) form, so that the iterative methods only touch the nonzeros. */
+
+/*
+  Layout:
+  The off-diagonal nonzeros of row i are stored in value[k] and column[k]
+  for k = rowStart[i], ..., rowStart[i+1] - 1. The diagonal is kept apart
+  as its inverse, invDiagonal[i] = 1 / a_ii, and the right hand side in b.
+  For example, the system
+
+   5 -2  3 | -1
+  -3  9  1 |  2
+   2 -1 -7 |  3
+
+  is stored as:
+
+  rowStart    = {0, 2, 4, 6}
+  column      = {1, 2, 0, 2, 0, 1}
+  value       = {-2, 3, -3, 1, 2, -1}
+  invDiagonal = {1/5, 1/9, -1/7}
+  b           = {-1, 2, 3}
+*/
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+public class SparseMatrix {
+  private static final VarHandle ELEMENT =
+      MethodHandles.arrayElementVarHandle(double[].class);
+  public static final int NO_PRECONDITIONER = 0;
+  public static final int JACOBI_PRECONDITIONER = 1;
+  public static final int SGS_PRECONDITIONER = 2;
+
+  private int n;
+  private int[] rowStart;
+  private int[] column;
+  private double[] value;
+  private double[] invDiagonal;
+  private double[] b;
+
+  /**
+   * Builds the matrix from rows in CSR form that may include the diagonal,
+   * the diagonal entries are moved to invDiagonal.
+  */
+  public SparseMatrix(int n, int[] rowStart, int[] column, double[] value,
+                      double[] b)
+  {
+    this.n = n;
+    this.b = b;
+    this.rowStart = new int[n + 1];
+    this.invDiagonal = new double[n];
+
+    int nonZeros = 0;
+    for (int i = 0; i < n; i++)
+      for (int k = rowStart[i]; k < rowStart[i+1]; k++)
+        if (column[k] != i && value[k] != 0)
+          nonZeros++;
+
+    this.column = new int[nonZeros];
+    this.value = new double[nonZeros];
+
+    int p = 0;
+    for (int i = 0; i < n; i++) {
+      double diagonal = 0;
+      this.rowStart[i] = p;
+      for (int k = rowStart[i]; k < rowStart[i+1]; k++) {
+        if (column[k] == i) {
+          diagonal += value[k];
+        } else if (value[k] != 0) {
+          this.column[p] = column[k];
+          this.value[p] = value[k];
+          p++;
+        }
+      }
+
+      invDiagonal[i] = 1/diagonal;
+    }
+    this.rowStart[n] = p;
+  }
+
+  /**
+   * Builds the sparse form of an augmented matrix with n rows and n + 1
+   * columns, zeros are dropped.
+  */
+  public static SparseMatrix fromDense(double[][] M)
+  {
+    return fromDense(new ArrayMatrix(M));
+  }
+
+  public static SparseMatrix fromDense(AugmentedMatrix M)
+  {
+    int n = M.rows();
+    int nonZeros = 0;
+    for (int i = 0; i < n; i++)
+      for (int j = 0; j < n; j++)
+        if (M.get(i, j) != 0)
+          nonZeros++;
+
+    int[] rowStart = new int[n + 1];
+    int[] column = new int[nonZeros];
+    double[] value = new double[nonZeros];
+    double[] b = new double[n];
+
+    int p = 0;
+    for (int i = 0; i < n; i++) {
+      rowStart[i] = p;
+      for (int j = 0; j < n; j++) {
+        if (M.get(i, j) != 0) {
+          column[p] = j;
+          value[p] = M.get(i, j);
+          p++;
+        }
+      }
+      b[i] = M.get(i, n);
+    }
+    rowStart[n] = p;
+
+    return new SparseMatrix(n, rowStart, column, value, b);
+  }
+
+  public int rows() { return n; }
+
+  /** Number of stored nonzeros, including the diagonal. */
+  public int nonZeros() { return value.length + n; }
+
+  public void print()
+  {
+    for (int i = 0; i < n; i++) {
+      System.out.print("[" + i + "] " + i + ":" + (1/invDiagonal[i]) + " ");
+      for (int k = rowStart[i]; k < rowStart[i+1]; k++)
+        System.out.print(column[k] + ":" + value[k] + " ");
+      System.out.println("| " + b[i]);
+    }
+  }
+
+  /**
+   * Changes a_ij (b_i if j == n) if it's stored, the diagonal is always
+   * stored. Returns false if a_ij is a zero that isn't stored, see
+   * withEntries().
+  */
+  public boolean set(int i, int j, double a)
+  {
+    if (j == n) {
+      b[i] = a;
+      return true;
+    }
+    if (j == i) {
+      invDiagonal[i] = 1/a;
+      return true;
+    }
+
+    for (int k = rowStart[i]; k < rowStart[i+1]; k++) {
+      if (column[k] == j) {
+        value[k] = a;
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Returns a copy with the entries (row[k], col[k]) = val[k] added, for
+   * k < count; they must be off the diagonal. O(nnz).
+  */
+  public SparseMatrix withEntries(int[] row, int[] col, double[] val, int count)
+  {
+    int[] start = new int[n + 1];
+    for (int i = 0; i < n; i++)
+      start[i+1] = rowStart[i+1] - rowStart[i] + 1; // + 1 for the diagonal
+    for (int k = 0; k < count; k++)
+      start[row[k] + 1]++;
+    for (int i = 0; i < n; i++)
+      start[i+1] += start[i];
+
+    int[] next = java.util.Arrays.copyOf(start, n);
+    int[] c = new int[start[n]];
+    double[] v = new double[start[n]];
+    for (int i = 0; i < n; i++) {
+      c[next[i]] = i;
+      v[next[i]++] = 1/invDiagonal[i];
+      for (int k = rowStart[i]; k < rowStart[i+1]; k++) {
+        c[next[i]] = column[k];
+        v[next[i]++] = value[k];
+      }
+    }
+    for (int k = 0; k < count; k++) {
+      c[next[row[k]]] = col[k];
+      v[next[row[k]]++] = val[k];
+    }
+
+    return new SparseMatrix(n, start, c, v, b.clone());
+  }
+
+  /** |a_ii| > sum of |a_ij|, j != i. */
+  public boolean isRowDominant(int i)
+  {
+    double sum = 0;
+    for (int k = rowStart[i]; k < rowStart[i+1]; k++)
+      sum += Math.abs(value[k]);
+
+    return Math.abs(invDiagonal[i]) * sum < 1;
+  }
+
+  /**
+   * Returns true if every row satisfies |a_ii| > sum of |a_ij|, j != i.
+  */
+  public boolean isDiagonallyDominant()
+  {
+    for (int i = 0; i < n; i++)
+      if (!isRowDominant(i))
+        return false;
+
+    return true;
+  }
+
+  /** Right hand side b of the system. */
+  public double[] rightHandSide() { return b; }
+
+  /**
+   * y = A * x, b isn't used.
+  */
+  public void multiply(double[] x, double[] y)
+  {
+    for (int i = 0; i < n; i++) {
+      double sum = x[i] / invDiagonal[i];
+      for (int k = rowStart[i]; k < rowStart[i+1]; k++)
+        sum += value[k] * x[column[k]];
+      y[i] = sum;
+    }
+  }
+
+  /**
+   * Relative residual ||b - A * x|| / ||b||, maximum norm.
+  */
+  public double residual(double[] x)
+  {
+    return residual(x, b);
+  }
+
+  /**
+   * Relative residual for another right hand side, ||rhs - A * x|| / ||rhs||.
+  */
+  public double residual(double[] x, double[] rhs)
+  {
+    double r = 0, normB = 0;
+    for (int i = 0; i < n; i++) {
+      double sum = rhs[i] - x[i] / invDiagonal[i];
+      for (int k = rowStart[i]; k < rowStart[i+1]; k++)
+        sum -= value[k] * x[column[k]];
+
+      r = Math.max(r, Math.abs(sum));
+      normB = Math.max(normB, Math.abs(rhs[i]));
+    }
+
+    return normB == 0 ? r : r / normB;
+  }
+
+  /**
+   * z = M^-1 * r, where M approximates A:
+   * JACOBI_PRECONDITIONER: M = D, one Jacobi sweep on A * z = r from z = 0.
+   * SGS_PRECONDITIONER: M = (D + L) * D^-1 * (D + U), a forward and a
+   * backward Gauss-Seidel sweep on A * z = r from z = 0.
+  */
+  public void precondition(int type, double[] r, double[] z)
+  {
+    if (type == JACOBI_PRECONDITIONER) {
+      for (int i = 0; i < n; i++)
+        z[i] = invDiagonal[i] * r[i];
+    } else if (type == SGS_PRECONDITIONER) {
+      Arrays.fill(z, 0);
+      gaussSeidelSweep(z, r, 1, false);
+      gaussSeidelSweep(z, r, 1, true);
+    } else {
+      System.arraycopy(r, 0, z, 0, n);
+    }
+  }
+
+  /**
+   * Same as AugmentedMatrix.dominantRows(): every row can only be
+   * dominant in the column of its largest entry, so the rows are assigned
+   * to those columns in one pass over the nonzeros. Returns R, where new
+   * row r is row R[r], or null if the rows can't be made dominant.
+  */
+  public int[] dominantRows()
+  {
+    int[] R = new int[n];
+    Arrays.fill(R, -1);
+
+    for (int i = 0; i < n; i++) {
+      double sum = Math.abs(1/invDiagonal[i]);
+      double max = sum;
+      int best = i;
+
+      for (int k = rowStart[i]; k < rowStart[i+1]; k++) {
+        sum += Math.abs(value[k]);
+        if (Math.abs(value[k]) > max) {
+          max = Math.abs(value[k]);
+          best = column[k];
+        }
+      }
+
+      if (2 * max <= sum || R[best] != -1)
+        return null;
+
+      R[best] = i;
+    }
+
+    return R;
+  }
+
+  /**
+   * Returns the matrix whose row r is row R[r] of this one.
+  */
+  public SparseMatrix permuteRows(int[] R)
+  {
+    int[] start = new int[n + 1];
+    int[] col = new int[nonZeros()];
+    double[] val = new double[nonZeros()];
+    double[] rhs = new double[n];
+
+    int p = 0;
+    for (int r = 0; r < n; r++) {
+      int i = R[r];
+      start[r] = p;
+
+      col[p] = i; // old diagonal, no longer on the diagonal unless r == i
+      val[p] = 1/invDiagonal[i];
+      p++;
+
+      for (int k = rowStart[i]; k < rowStart[i+1]; k++) {
+        col[p] = column[k];
+        val[p] = value[k];
+        p++;
+      }
+      rhs[r] = b[i];
+    }
+    start[n] = p;
+
+    return new SparseMatrix(n, start, col, val, rhs);
+  }
+
+  /**
+   * One Gauss-Seidel sweep over X, in place. Returns the largest change
+   * of a component.
+  */
+  public double gaussSeidelSweep(double[] X)
+  {
+    return gaussSeidelSweep(X, 1, false);
+  }
+
+  /**
+   * One SOR sweep with relaxation factor omega, over rows n-1, ..., 0 if
+   * backward is true. Returns the largest change of a component.
+  */
+  public double gaussSeidelSweep(double[] X, double omega, boolean backward)
+  {
+    return gaussSeidelSweep(X, b, omega, backward);
+  }
+
+  /**
+   * SOR sweep for the system A * X = rhs, with the coefficients of this
+   * matrix and another right hand side.
+  */
+  public double gaussSeidelSweep(double[] X, double[] rhs, double omega,
+                                 boolean backward)
+  {
+    double delta = 0;
+    for (int r = 0; r < n; r++) {
+      int i = backward ? n - 1 - r : r;
+      double sum = rhs[i];
+      for (int k = rowStart[i]; k < rowStart[i+1]; k++)
+        sum -= value[k] * X[column[k]];
+
+      double x = (1 - omega) * X[i] + omega * invDiagonal[i] * sum;
+      delta = Math.max(delta, Math.abs(x - X[i]));
+      X[i] = x;
+    }
+
+    return delta;
+  }
+
+  /**
+   * SOR update of rows[from..to-1] only, used by the multicolor ordering
+   * where rows of one color are updated by several threads.
+  */
+  public double gaussSeidelSweep(double[] X, double omega, int[] rows,
+                                 int from, int to)
+  {
+    double delta = 0;
+    for (int r = from; r < to; r++) {
+      int i = rows[r];
+      double sum = b[i];
+      for (int k = rowStart[i]; k < rowStart[i+1]; k++)
+        sum -= value[k] * X[column[k]];
+
+      double x = (1 - omega) * X[i] + omega * invDiagonal[i] * sum;
+      delta = Math.max(delta, Math.abs(x - X[i]));
+      X[i] = x;
+    }
+
+    return delta;
+  }
+
+  /**
+   * One sweep over a block of k systems with this matrix and different
+   * right hand sides B, stored interleaved: X[j*k + c] is x_j of system c
+   * and B[i*k + c] is b_i of system c. Every nonzero is read once and
+   * applied to the k systems. With P == X it's a Gauss-Seidel (SOR) sweep,
+   * otherwise a Jacobi sweep from P (omega = 1). delta[c] gets the largest
+   * change of system c.
+  */
+  public void blockSweep(double[] P, double[] X, double[] B, int k,
+                         double omega, double[] delta)
+  {
+    double[] sum = new double[k];
+    for (int i = 0; i < n; i++) {
+      int row = i * k;
+      System.arraycopy(B, row, sum, 0, k);
+
+      for (int p = rowStart[i]; p < rowStart[i+1]; p++) {
+        double a = value[p];
+        int col = column[p] * k;
+        for (int c = 0; c < k; c++)
+          sum[c] -= a * P[col + c];
+      }
+
+      for (int c = 0; c < k; c++) {
+        double x = (1 - omega) * P[row + c] + omega * invDiagonal[i] * sum[c];
+        delta[c] = Math.max(delta[c], Math.abs(x - P[row + c]));
+        X[row + c] = x;
+      }
+    }
+  }
+
+  /**
+   * Greedy coloring of the graph where rows i and j are adjacent if
+   * a_ij != 0 or a_ji != 0. Returns the rows of each color, in increasing
+   * order; rows of the same color can be updated at the same time.
+  */
+  public int[][] colorClasses()
+  {
+    // Transposed pattern: the rows that read x_j are tRow[tStart[j]..]
+    int[] tStart = new int[n + 1];
+    for (int k = 0; k < column.length; k++)
+      tStart[column[k] + 1]++;
+    for (int i = 0; i < n; i++)
+      tStart[i+1] += tStart[i];
+
+    int[] tRow = new int[column.length];
+    int[] next = Arrays.copyOf(tStart, n);
+    for (int i = 0; i < n; i++)
+      for (int k = rowStart[i]; k < rowStart[i+1]; k++)
+        tRow[next[column[k]]++] = i;
+
+    int[] color = new int[n];
+    int[] used = new int[n + 1]; // used[c] == i if a neighbor of i has color c
+    int colors = 0;
+    Arrays.fill(color, -1);
+    Arrays.fill(used, -1);
+
+    for (int i = 0; i < n; i++) {
+      for (int k = rowStart[i]; k < rowStart[i+1]; k++)
+        if (color[column[k]] >= 0)
+          used[color[column[k]]] = i;
+      for (int k = tStart[i]; k < tStart[i+1]; k++)
+        if (color[tRow[k]] >= 0)
+          used[color[tRow[k]]] = i;
+
+      int c = 0;
+      while (used[c] == i)
+        c++;
+
+      color[i] = c;
+      colors = Math.max(colors, c + 1);
+    }
+
+    int[] size = new int[colors];
+    for (int i = 0; i < n; i++)
+      size[color[i]]++;
+
+    int[][] classes = new int[colors][];
+    for (int c = 0; c < colors; c++)
+      classes[c] = new int[size[c]];
+
+    Arrays.fill(size, 0);
+    for (int i = 0; i < n; i++)
+      classes[color[i]][size[color[i]]++] = i;
+
+    return classes;
+  }
+
+  /**
+   * One Jacobi sweep, reads the previous approximation P and writes X.
+   * Returns the largest change of a component.
+  */
+  public double jacobiSweep(double[] P, double[] X)
+  {
+    return jacobiSweep(P, X, 0, n);
+  }
+
+  /**
+   * Jacobi sweep restricted to rows from..to-1, rows don't depend on each
+   * other so disjoint ranges can be computed by different threads.
+  */
+  public double jacobiSweep(double[] P, double[] X, int from, int to)
+  {
+    double delta = 0;
+    for (int i = from; i < to; i++) {
+      double sum = b[i];
+      for (int k = rowStart[i]; k < rowStart[i+1]; k++)
+        sum -= value[k] * P[column[k]];
+
+      X[i] = invDiagonal[i] * sum;
+      delta = Math.max(delta, Math.abs(X[i] - P[i]));
+    }
+
+    return delta;
+  }
+
+  /**
+   * Asynchronous (chaotic) relaxation of rows from..to-1 in place, while
+   * other threads relax other rows of the same X. The values of the other
+   * rows are whatever their threads wrote last: opaque accesses, never
+   * torn and eventually visible, but no ordering and no barrier. Returns
+   * the largest change.
+  */
+  public double asynchronousSweep(double[] X, int from, int to)
+  {
+    double delta = 0;
+    for (int i = from; i < to; i++) {
+      double sum = b[i];
+      for (int k = rowStart[i]; k < rowStart[i+1]; k++)
+        sum -= value[k] * (double)ELEMENT.getOpaque(X, column[k]);
+
+      // Only this thread writes x_i
+      double x = invDiagonal[i] * sum;
+      delta = Math.max(delta, Math.abs(x - X[i]));
+      ELEMENT.setOpaque(X, i, x);
+    }
+
+    return delta;
+  }
+}
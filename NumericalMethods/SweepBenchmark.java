@@ -0,0 +1,91 @@
+/*
+ *  Copyright (C) 2012 Rafael Rendón Pablo <smart.rendon@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* * Measures the throughput of the dense Gauss-Seidel sweep, row by row
+ * against the blocked sweep of FlatMatrix. */
+
+/*
+  How to use:
+  $ java --add-modules jdk.incubator.vector SweepBenchmark [n] [sweeps] [tiles...]
+
+  Defaults to n = 4000, 10 sweeps and tiles 16, 64 and 256. The matrix is
+  random and diagonally dominant. Tile 0 is the row by row sweep, every
+  other line shows its speedup and how far its X is from the one of the
+  row by row sweep after the same number of sweeps. The matrix needs
+  8 * n^2 bytes of heap.
+*/
+
+import java.util.Random;
+
+public class SweepBenchmark {
+
+  public static void main(String[] args)
+  {
+    int n = args.length > 0 ? Integer.parseInt(args[0]) : 4000;
+    int sweeps = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+    int[] tiles = {0, 16, 64, 256};
+    if (args.length > 2) {
+      tiles = new int[args.length - 1];
+      for (int t = 2; t < args.length; t++)
+        tiles[t - 1] = Integer.parseInt(args[t]);
+    }
+
+    FlatMatrix M = new FlatMatrix(n);
+    Random random = new Random(1);
+    for (int i = 0; i < n; i++) {
+      double sum = 0;
+      for (int j = 0; j <= n; j++) {
+        double a = random.nextDouble() - 0.5;
+        M.set(i, j, a);
+        if (j != n)
+          sum += Math.abs(a);
+      }
+      M.set(i, i, sum + 1);
+    }
+
+    double bytes = 8.0 * n * (n + 1);
+    double[] reference = null;
+    double base = 0;
+    System.out.println("n = " + n + ", " + sweeps + " sweeps, " +
+                       bytes / (1 << 20) + " MB per sweep");
+
+    for (int tile : tiles) {
+      double[] X = new double[n];
+      for (int s = 0; s < 3; s++) // Warm up
+        M.gaussSeidelSweep(X, 1, false, tile);
+
+      java.util.Arrays.fill(X, 0);
+      long start = System.nanoTime();
+      for (int s = 0; s < sweeps; s++)
+        M.gaussSeidelSweep(X, 1, false, tile);
+      double seconds = (System.nanoTime() - start) / 1e9 / sweeps;
+
+      String line = "tile " + tile + ": " + seconds * 1e3 + " ms/sweep, " +
+                    bytes / seconds / 1e9 + " GB/s";
+      if (reference == null) {
+        reference = X;
+        base = seconds;
+      } else {
+        double diff = 0;
+        for (int i = 0; i < n; i++)
+          diff = Math.max(diff, Math.abs(X[i] - reference[i]));
+        line += ", speedup " + base / seconds + ", max |X - X(row)| = " + diff;
+      }
+      System.out.println(line);
+    }
+  }
+}
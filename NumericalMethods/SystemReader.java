@@ -0,0 +1,427 @@
+/*
+ *  Copyright (C) 2012 Rafael Rendón Pablo <smart.rendon@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* * This class reads the augmented matrix of a system of linear equations,
+ * as text or in a binary format. */
+
+/*
+  Text format, the one read by GaussSeidel, Jacobi, etc.: n followed by
+  the n * (n + 1) coefficients, separated by any whitespace. Coefficients
+  can be integers, decimals or in scientific notation (2, -0.5, 1.5e-3).
+  The input is read in blocks of bytes and the numbers are parsed from the
+  bytes, without creating a String per number.
+
+  Binary format, little endian:
+
+  bytes 0-3   magic "LSYS"
+  bytes 4-7   n, int
+  bytes 8-    n rows of n + 1 doubles, row-major: a_i1 ... a_in b_i
+
+  The binary file is memory mapped, so it's read at the speed of the disk.
+  To convert a text file:
+
+  $ java SystemReader equations.bin < equations.txt
+  $ java GaussSeidel -bin equations.bin
+*/
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public class SystemReader {
+  public static final int MAGIC = 0x5359534c; // "LSYS" little endian
+
+  // Exact powers of ten, for the fast path of nextDouble()
+  private static final double[] POWERS = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  private InputStream in;
+  private byte[] buffer = new byte[1 << 16];
+  private int position;
+  private int length;
+  private byte[] token = new byte[64]; // Current number
+
+  public SystemReader(InputStream in) { this.in = in; }
+
+  private int read() throws IOException
+  {
+    if (position == length) {
+      length = in.read(buffer, 0, buffer.length);
+      position = 0;
+      if (length <= 0) {
+        length = 0;
+        return -1;
+      }
+    }
+
+    return buffer[position++];
+  }
+
+  /**
+   * Copies the next token to the token array and returns its length.
+  */
+  private int nextToken() throws IOException
+  {
+    int c = read();
+    while (c == ' ' || c == '\n' || c == '\r' || c == '\t')
+      c = read();
+
+    if (c == -1)
+      throw new EOFException("Missing numbers in the input");
+
+    int size = 0;
+    while (c != -1 && c > ' ') {
+      if (size == token.length)
+        token = java.util.Arrays.copyOf(token, 2 * size);
+      token[size++] = (byte)c;
+      c = read();
+    }
+
+    return size;
+  }
+
+  /**
+   * false if only blanks are left in the input.
+  */
+  public boolean hasNext() throws IOException
+  {
+    int c = read();
+    while (c == ' ' || c == '\n' || c == '\r' || c == '\t')
+      c = read();
+
+    if (c == -1)
+      return false;
+
+    position--; // c is still in the buffer
+    return true;
+  }
+
+  /**
+   * Returns the rest of the current line, without the end of line, or
+   * null at the end of the input. Used for headers and comments.
+  */
+  public String nextLine() throws IOException
+  {
+    int c = read();
+    if (c == -1)
+      return null;
+
+    int size = 0;
+    while (c != -1 && c != '\n') {
+      if (c != '\r') {
+        if (size == token.length)
+          token = java.util.Arrays.copyOf(token, 2 * size);
+        token[size++] = (byte)c;
+      }
+      c = read();
+    }
+
+    return new String(token, 0, size, "US-ASCII");
+  }
+
+  public int nextInt() throws IOException
+  {
+    return (int)nextDouble();
+  }
+
+  /**
+   * Parses [sign] digits [. digits] [e [sign] digits]. If the digits fit
+   * in 15 significant digits and the exponent in 22 the result is
+   * mantissa * 10^e or mantissa / 10^-e, both exact operations rounded
+   * once, as Double.parseDouble; other numbers go to Double.parseDouble,
+   * and so does a token without digits in the mantissa or the exponent
+   * ("e5", "1e", "."), which then throws NumberFormatException.
+  */
+  public double nextDouble() throws IOException
+  {
+    int size = nextToken();
+    int p = 0;
+    boolean negative = false;
+
+    if (token[p] == '-' || token[p] == '+')
+      negative = token[p++] == '-';
+
+    long mantissa = 0;
+    int digits = 0, exponent = 0;
+    int read = 0; // Digits of the mantissa, with the leading zeros
+
+    for (; p < size && token[p] >= '0' && token[p] <= '9'; p++, read++) {
+      if (mantissa != 0 || token[p] != '0')
+        digits++;
+      mantissa = digits <= 18 ? 10 * mantissa + (token[p] - '0') : mantissa;
+      if (digits > 18)
+        exponent++;
+    }
+
+    if (p < size && token[p] == '.') {
+      for (p++; p < size && token[p] >= '0' && token[p] <= '9'; p++, read++) {
+        if (mantissa != 0 || token[p] != '0')
+          digits++;
+        if (digits <= 18) {
+          mantissa = 10 * mantissa + (token[p] - '0');
+          exponent--;
+        }
+      }
+    }
+
+    if (p < size && (token[p] == 'e' || token[p] == 'E')) {
+      boolean negativeExponent = false;
+      int e = 0;
+
+      p++;
+      if (p < size && (token[p] == '-' || token[p] == '+'))
+        negativeExponent = token[p++] == '-';
+      if (p == size)
+        read = 0; // No digits after e, let Double.parseDouble reject it
+      for (; p < size && token[p] >= '0' && token[p] <= '9'; p++)
+        e = Math.min(10 * e + (token[p] - '0'), 100000);
+
+      exponent += negativeExponent ? -e : e;
+    }
+
+    if (p == size && read > 0 && digits <= 15 && Math.abs(exponent) <= 22) {
+      double value = exponent < 0 ? mantissa / POWERS[-exponent]
+                                  : mantissa * POWERS[exponent];
+      return negative ? -value : value;
+    }
+
+    return Double.parseDouble(new String(token, 0, size, "US-ASCII"));
+  }
+
+  /**
+   * Reads n and the augmented matrix into the given storage ("array",
+   * "flat", "offheap", "float" or "mixed"). "mixed" is a FloatMatrix while
+   * every entry is exactly a float, at the first one that isn't the
+   * entries read so far move to a "flat" matrix, so the double matrix is
+   * only built when the float one can't replace it.
+  */
+  public AugmentedMatrix readText(String storage) throws IOException
+  {
+    DenseRows rows = new DenseRows(storage);
+    readRows(rows);
+    return rows.M;
+  }
+
+  /**
+   * Reads n and the augmented matrix straight into a SparseMatrix, row by
+   * row, dropping the zeros: the dense matrix is never in memory.
+  */
+  public SparseMatrix readSparse() throws IOException
+  {
+    SparseRows rows = new SparseRows();
+    readRows(rows);
+    return rows.matrix();
+  }
+
+  private void readRows(RowHandler handler) throws IOException
+  {
+    int n = nextInt();
+    double[] row = new double[n + 1];
+    handler.start(n);
+
+    for (int i = 0; i < n; i++) {
+      for (int j = 0; j < n + 1; j++)
+        row[j] = nextDouble();
+      handler.row(i, row);
+    }
+  }
+
+  // Receives a system row by row, a_i0 ... a_in-1 and b_i
+  private interface RowHandler {
+    void start(int n);
+
+    void row(int i, double[] row);
+  }
+
+  // Into an AugmentedMatrix of the given storage, see readText()
+  private static class DenseRows implements RowHandler {
+    private String storage;
+    private boolean mixed;
+    AugmentedMatrix M;
+
+    DenseRows(String storage)
+    {
+      this.storage = storage;
+      this.mixed = storage.equals("mixed");
+    }
+
+    public void start(int n)
+    {
+      M = AugmentedMatrix.create(n, mixed ? "float" : storage);
+    }
+
+    public void row(int i, double[] row)
+    {
+      if (mixed && M instanceof FloatMatrix && !isFloat(row))
+        M = toDouble(M);
+      M.setRow(i, row);
+    }
+  }
+
+  // Into the CSR arrays of a SparseMatrix, without the zeros
+  private static class SparseRows implements RowHandler {
+    private int n;
+    private int[] rowStart;
+    private int[] column = new int[16];
+    private double[] value = new double[16];
+    private double[] b;
+    private int count;
+
+    public void start(int n)
+    {
+      this.n = n;
+      rowStart = new int[n + 1];
+      b = new double[n];
+    }
+
+    public void row(int i, double[] row)
+    {
+      for (int j = 0; j < n; j++) {
+        if (row[j] == 0)
+          continue;
+        if (count == column.length) {
+          column = java.util.Arrays.copyOf(column, 2 * count);
+          value = java.util.Arrays.copyOf(value, 2 * count);
+        }
+        column[count] = j;
+        value[count++] = row[j];
+      }
+      b[i] = row[n];
+      rowStart[i+1] = count;
+    }
+
+    SparseMatrix matrix() { return new SparseMatrix(n, rowStart, column, value, b); }
+  }
+
+  // Flat double copy of a matrix with float entries, exact
+  private static AugmentedMatrix toDouble(AugmentedMatrix F)
+  {
+    int n = F.rows();
+    AugmentedMatrix M = AugmentedMatrix.create(n, "flat");
+    for (int i = 0; i < n; i++)
+      for (int j = 0; j < n + 1; j++)
+        M.set(i, j, F.get(i, j));
+
+    return M;
+  }
+
+  /**
+   * Reads a system in the binary format from a memory mapped file, the
+   * storages are the same as in readText().
+  */
+  public static AugmentedMatrix readBinary(String path, String storage)
+    throws IOException
+  {
+    DenseRows rows = new DenseRows(storage);
+    mapRows(path, rows);
+    return rows.M;
+  }
+
+  /** Same as readSparse() for the binary format. */
+  public static SparseMatrix readBinarySparse(String path) throws IOException
+  {
+    SparseRows rows = new SparseRows();
+    mapRows(path, rows);
+    return rows.matrix();
+  }
+
+  private static void mapRows(String path, RowHandler handler)
+    throws IOException
+  {
+    try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+      ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, 8)
+                                 .order(ByteOrder.LITTLE_ENDIAN);
+      if (header.getInt(0) != MAGIC)
+        throw new IOException(path + " isn't a linear system file");
+
+      int n = header.getInt(4);
+      long rowBytes = 8L * (n + 1);
+      if (channel.size() < 8 + n * rowBytes)
+        throw new EOFException(path + " is truncated");
+
+      double[] row = new double[n + 1];
+      int rowsPerMap = (int)Math.max(1, Integer.MAX_VALUE / rowBytes);
+      handler.start(n);
+
+      // A mapping can't exceed 2 GB, map whole rows a block at a time
+      for (int first = 0; first < n; first += rowsPerMap) {
+        int rows = Math.min(rowsPerMap, n - first);
+        DoubleBuffer data = channel.map(FileChannel.MapMode.READ_ONLY,
+                                        8 + first * rowBytes, rows * rowBytes)
+                                   .order(ByteOrder.LITTLE_ENDIAN)
+                                   .asDoubleBuffer();
+        for (int i = first; i < first + rows; i++) {
+          data.get(row);
+          handler.row(i, row);
+        }
+      }
+    }
+  }
+
+  private static boolean isFloat(double[] row)
+  {
+    for (int j = 0; j < row.length; j++)
+      if ((float)row[j] != row[j])
+        return false;
+
+    return true;
+  }
+
+  /**
+   * Writes M in the binary format.
+  */
+  public static void writeBinary(AugmentedMatrix M, String path)
+    throws IOException
+  {
+    int n = M.rows();
+    try (FileChannel channel = FileChannel.open(Paths.get(path),
+           StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+           StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer buffer = ByteBuffer.allocate(Math.max(8, 8 * (n + 1)))
+                                    .order(ByteOrder.LITTLE_ENDIAN);
+      buffer.putInt(MAGIC).putInt(n).flip();
+      while (buffer.hasRemaining())
+        channel.write(buffer);
+
+      for (int i = 0; i < n; i++) {
+        buffer.clear();
+        for (int j = 0; j < n + 1; j++)
+          buffer.putDouble(M.get(i, j));
+        buffer.flip();
+        while (buffer.hasRemaining())
+          channel.write(buffer);
+      }
+    }
+  }
+
+  public static void main(String[] args) throws IOException
+  {
+    if (args.length != 1) {
+      System.err.println("Usage: java SystemReader <output.bin> < equations.txt");
+      System.exit(1);
+    }
+
+    AugmentedMatrix M = new SystemReader(System.in).readText("flat");
+    writeBinary(M, args[0]);
+  }
+}
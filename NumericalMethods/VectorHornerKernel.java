@@ -0,0 +1,100 @@
+/*
+ *  Copyright (C) 2012 Rafael Rendón Pablo <smart.rendon@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* * HornerKernel with one point per SIMD lane through the incubating
+ * Vector API, needs --add-modules jdk.incubator.vector. */
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+public class VectorHornerKernel implements HornerKernel {
+  private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+  public void evaluate(double[] poly, int offset, int n, double[] x, int from,
+                       int to, double[] f, double[] df)
+  {
+    int lanes = SPECIES.length();
+    DoubleVector top = DoubleVector.broadcast(SPECIES, poly[offset + n]);
+    DoubleVector zero = DoubleVector.zero(SPECIES);
+
+    // Two vectors of points, four independent chains with the derivatives
+    int k = from;
+    for (; k + 2 * lanes <= to; k += 2 * lanes) {
+      DoubleVector x0 = DoubleVector.fromArray(SPECIES, x, k);
+      DoubleVector x1 = DoubleVector.fromArray(SPECIES, x, k + lanes);
+      DoubleVector f0 = top, f1 = top, d0 = zero, d1 = zero;
+      for (int i = offset + n - 1; i >= offset; i--) {
+        DoubleVector a = DoubleVector.broadcast(SPECIES, poly[i]);
+        d0 = d0.fma(x0, f0);
+        d1 = d1.fma(x1, f1);
+        f0 = f0.fma(x0, a);
+        f1 = f1.fma(x1, a);
+      }
+      f0.intoArray(f, k);
+      f1.intoArray(f, k + lanes);
+      d0.intoArray(df, k);
+      d1.intoArray(df, k + lanes);
+    }
+
+    for (; k + lanes <= to; k += lanes) {
+      DoubleVector x0 = DoubleVector.fromArray(SPECIES, x, k);
+      DoubleVector f0 = top, d0 = zero;
+      for (int i = offset + n - 1; i >= offset; i--) {
+        d0 = d0.fma(x0, f0);
+        f0 = f0.fma(x0, DoubleVector.broadcast(SPECIES, poly[i]));
+      }
+      f0.intoArray(f, k);
+      d0.intoArray(df, k);
+    }
+
+    SCALAR.evaluate(poly, offset, n, x, k, to, f, df);
+  }
+
+  public void evaluate(double[] poly, int offset, int n, double[] xr,
+                       double[] xi, int from, int to, double[] fr,
+                       double[] fi, double[] dr, double[] di)
+  {
+    int lanes = SPECIES.length();
+    DoubleVector top = DoubleVector.broadcast(SPECIES, poly[offset + n]);
+    DoubleVector zero = DoubleVector.zero(SPECIES);
+
+    // The real and imaginary parts of f and f' are four chains already
+    int k = from;
+    for (; k + lanes <= to; k += lanes) {
+      DoubleVector r = DoubleVector.fromArray(SPECIES, xr, k);
+      DoubleVector im = DoubleVector.fromArray(SPECIES, xi, k);
+      DoubleVector negIm = im.neg();
+      DoubleVector f0 = top, f1 = zero, d0 = zero, d1 = zero;
+      for (int i = offset + n - 1; i >= offset; i--) {
+        DoubleVector a = DoubleVector.broadcast(SPECIES, poly[i]);
+        // d = d * z + f, f = f * z + a
+        DoubleVector t = d1.fma(negIm, d0.fma(r, f0));
+        d1 = d1.fma(r, d0.fma(im, f1));
+        d0 = t;
+        t = f1.fma(negIm, f0.fma(r, a));
+        f1 = f1.fma(r, f0.mul(im));
+        f0 = t;
+      }
+      f0.intoArray(fr, k);
+      f1.intoArray(fi, k);
+      d0.intoArray(dr, k);
+      d1.intoArray(di, k);
+    }
+
+    SCALAR.evaluate(poly, offset, n, xr, xi, k, to, fr, fi, dr, di);
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ *  Copyright (C) 2012 Rafael Rendón Pablo <smart.rendon@gmail.com>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* * RowKernel using the SIMD instructions of the processor through the
+ * incubating Vector API, needs --add-modules jdk.incubator.vector. */
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+public class VectorRowKernel implements RowKernel {
+  private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+  public double dot(double[] a, int offset, double[] x, int n)
+  {
+    int lanes = SPECIES.length();
+    int bound = SPECIES.loopBound(n);
+    DoubleVector s0 = DoubleVector.zero(SPECIES);
+    DoubleVector s1 = DoubleVector.zero(SPECIES);
+
+    // Two accumulators to hide the latency of the fused multiply-add
+    int j = 0;
+    for (; j + lanes < bound; j += 2 * lanes) {
+      DoubleVector a0 = DoubleVector.fromArray(SPECIES, a, offset + j);
+      DoubleVector a1 = DoubleVector.fromArray(SPECIES, a, offset + j + lanes);
+      s0 = a0.fma(DoubleVector.fromArray(SPECIES, x, j), s0);
+      s1 = a1.fma(DoubleVector.fromArray(SPECIES, x, j + lanes), s1);
+    }
+    for (; j < bound; j += lanes) {
+      DoubleVector a0 = DoubleVector.fromArray(SPECIES, a, offset + j);
+      s0 = a0.fma(DoubleVector.fromArray(SPECIES, x, j), s0);
+    }
+
+    double sum = s0.add(s1).reduceLanes(VectorOperators.ADD);
+    for (; j < n; j++)
+      sum += a[offset + j] * x[j];
+
+    return sum;
+  }
+
+  public void dot4(double[] a, int r0, int r1, int r2, int r3, double[] x,
+                   int from, int to, double[] sums)
+  {
+    int lanes = SPECIES.length();
+    DoubleVector s0 = DoubleVector.zero(SPECIES);
+    DoubleVector s1 = DoubleVector.zero(SPECIES);
+    DoubleVector s2 = DoubleVector.zero(SPECIES);
+    DoubleVector s3 = DoubleVector.zero(SPECIES);
+
+    // Four rows are four independent accumulators already
+    int j = from;
+    for (; j + lanes <= to; j += lanes) {
+      DoubleVector v = DoubleVector.fromArray(SPECIES, x, j);
+      s0 = DoubleVector.fromArray(SPECIES, a, r0 + j).fma(v, s0);
+      s1 = DoubleVector.fromArray(SPECIES, a, r1 + j).fma(v, s1);
+      s2 = DoubleVector.fromArray(SPECIES, a, r2 + j).fma(v, s2);
+      s3 = DoubleVector.fromArray(SPECIES, a, r3 + j).fma(v, s3);
+    }
+
+    double t0 = s0.reduceLanes(VectorOperators.ADD);
+    double t1 = s1.reduceLanes(VectorOperators.ADD);
+    double t2 = s2.reduceLanes(VectorOperators.ADD);
+    double t3 = s3.reduceLanes(VectorOperators.ADD);
+    for (; j < to; j++) {
+      double v = x[j];
+      t0 += a[r0 + j] * v;
+      t1 += a[r1 + j] * v;
+      t2 += a[r2 + j] * v;
+      t3 += a[r3 + j] * v;
+    }
+
+    sums[0] += t0;
+    sums[1] += t1;
+    sums[2] += t2;
+    sums[3] += t3;
+  }
+}